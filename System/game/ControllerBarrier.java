@@ -0,0 +1,96 @@
+package game;
+
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+/*
+ * Runs two tasks at the same time (typically the updates of the hero and of the enemy controller in the same tick):
+ * one on a helper thread owned by the barrier, the other on the calling thread. run(-) returns once both are done,
+ * so a tick costs the longer of the two updates rather than their sum. The helper thread waits at a barrier between
+ * ticks, which is cheaper than handing a task to an executor every tick.
+ */
+public class ControllerBarrier
+{
+	private final CyclicBarrier start = new CyclicBarrier(2);
+	private final CyclicBarrier done = new CyclicBarrier(2);
+	private final Thread helper;
+
+	private volatile Runnable task;
+	private volatile Throwable failure;
+
+	public ControllerBarrier()
+	{
+		helper = new Thread(this::work, "controller-helper");
+		helper.setDaemon(true);
+		helper.start();
+	}
+
+	//Runs other on the helper thread and here on the calling thread, and waits for both
+	public void run(Runnable other, Runnable here)
+	{
+		task = other;
+		failure = null;
+		await(start);
+
+		try
+		{
+			here.run();
+		}
+		finally
+		{
+			await(done);
+		}
+
+		if (failure != null)
+			throw new RuntimeException(failure);
+	}
+
+	//Stops the helper thread
+	public void close()
+	{
+		helper.interrupt();
+	}
+
+	private void work()
+	{
+		try
+		{
+			while (true)
+			{
+				start.await();
+
+				try
+				{
+					task.run();
+				}
+				catch (Throwable t)
+				{
+					failure = t;
+				}
+
+				done.await();
+			}
+		}
+		catch (InterruptedException | BrokenBarrierException e)
+		{
+			//closed
+		}
+	}
+
+	private static void await(CyclicBarrier barrier)
+	{
+		try
+		{
+			barrier.await();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the controllers", e);
+		}
+		catch (BrokenBarrierException e)
+		{
+			throw new IllegalStateException("Controller barrier closed", e);
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package game;
 
 import game.models.Game;
+import game.models.GameRandom;
 import game.system.*;
 import game.view.*;
 
@@ -9,6 +10,12 @@ import game.controllers.examples.*;
 
 import pakku.agent.TestAgent;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
 /*
  * This class may be used to execute the game in timed or un-timed modes, with or without
  * visuals. Competitors should implement their controllers in game.entries.ghosts and 
@@ -45,6 +52,24 @@ public class Exec
 		
 		//this can be used for numerical testing (non-visual, no delays)
 //		exec.runExperiment(new RandomHero(),new AttractRepelGhosts(true),100);
+
+		//same, but the hero and the ghosts compute at the same time in every tick
+//		exec.runExperiment(new IterativeDeepeningHero(),new Legacy2TheReckoning(),100,true);
+
+		//same, but the controllers are only asked for actions when they have a choice to make
+//		exec.runExperiment(new IterativeDeepeningHero(),new Legacy2TheReckoning(),100,false,true);
+
+		//same, but spread across all cores (one game and one pair of controllers per worker thread)
+//		exec.runExperimentParallel(NearestPillHero::new,OriginalGhosts::new,10000,0);
+
+		//play until the mean score is known to +/- 50 points (95% confidence), at most 10000 games
+//		exec.runExperimentUntil(NearestPillHero::new,OriginalGhosts::new,50,10000,0);
+
+		//A/B test of two heroes on the same games (common random numbers)
+//		exec.comparePaired(NearestPillHero::new,RandomNonRevHero::new,OriginalGhosts::new,10000,0);
+
+		//every hero against every enemy, results saved to tournament.csv
+//		exec.runTournament(100,0,"tournament.csv");
 		
 		//run game without time limits (un-comment if required)
 //		exec.runGame(new RandomHero(),new RandomGhosts(),true,_Game.DELAY);
@@ -52,6 +77,9 @@ public class Exec
 		//run game with time limits (un-comment if required)
 //		exec.runGameTimed(new Human(),new AttractRepelGhosts(true),true);
 
+		//run game with time limits, with a hero that searches until the deadline and is then interrupted
+//		exec.runGameTimed(new IterativeDeepeningHero(0),new Legacy2TheReckoning(),true);
+
 		//run game with time limits. Here NearestPillHeroVS is chosen to illustrate how to use graphics for debugging/information purposes
 //		exec.runGameTimed(new NearestPillHeroVS(),new AttractRepelGhosts(false),true);
 		
@@ -62,47 +90,185 @@ public class Exec
 //		exec.replayGame("human-v-Legacy2.txt");
 	}
 	
-    protected int pacDir;
-    protected int[] ghostDirs;
     protected _Game_ game;
-    protected PacMan pacMan;
-    protected Ghosts ghosts;
-    protected boolean pacmanPlayed,ghostsPlayed;
    
     /*
      * For running multiple games without visuals. This is useful to get a good idea of how well a controller plays
      * against a chosen opponent: the random nature of the game means that performance can vary from game to game. 
      * Running many games and looking at the average score (and standard deviation/error) helps to get a better
-     * idea of how well the controller is likely to do in the competition.
+     * idea of how well the controller is likely to do in the competition. Prints and returns a summary of the games
+     * (see ExperimentReport).
      */
-    public void runExperiment(HeroController heroController, EnemyController enemyController, int trials)
+    public ExperimentReport runExperiment(HeroController heroController, EnemyController enemyController, int trials)
     {
-    	double avgScore=0;
-    	
+    	return runExperiment(heroController, enemyController, trials, false);
+    }
+
+    //Same, but if concurrent is set, the controllers are updated at the same time in every tick (see Experiment.playTrial(-))
+    public ExperimentReport runExperiment(HeroController heroController, EnemyController enemyController, int trials, boolean concurrent)
+    {
+    	return runExperiment(heroController, enemyController, trials, concurrent, false);
+    }
+
+    //Same, but if decisionsOnly is set, the controllers are only updated when they have a choice to make (see Experiment.playTrial(-));
+    //the scores are then not comparable with those of per-tick runs
+    public ExperimentReport runExperiment(HeroController heroController, EnemyController enemyController, int trials, boolean concurrent, boolean decisionsOnly)
+    {
+    	List<TrialResult> results = new ArrayList<TrialResult>();
+    	GameRandom seeds = new GameRandom(Game.rng.nextLong());
+    	TimedHeroController timedHero = new TimedHeroController(heroController);
+    	TimedEnemyController timedEnemy = new TimedEnemyController(enemyController);
+
+    	ControllerBarrier barrier = concurrent ? new ControllerBarrier() : null;
+
 		game=new _Game_();
 		
 		for(int i=0;i<trials;i++)
-		{
-			game.newGame();
-			heroController.init();
-			enemyController.init();
+			results.add(Experiment.playTrial(game, timedHero, timedEnemy, barrier, decisionsOnly, seeds.split().nextLong()));
 
-			while(!game.gameOver())
-			{
-				long due=System.currentTimeMillis()+ _Game.DELAY;
-				Game state = game.copy();
-				enemyController.update(state, due);
-				heroController.update(state, due);
-		        game.advanceGame(heroController.getAction(), enemyController.getActions());
-			}
-			
-			avgScore+=game.getScore();
-			heroController.shutdown();
-			enemyController.shutdown();
-//			System.out.println(game.getScore());
-		}
-		
-		System.out.println(avgScore/trials);
+		if(barrier!=null)
+			barrier.close();
+
+		ExperimentReport report = new ExperimentReport(results, timedHero.getLatency(), timedEnemy.getLatency());
+		System.out.println(report);
+		return report;
+    }
+
+    //Runs the experiment on as many threads as there are cores (see below)
+    public ExperimentReport runExperimentParallel(Supplier<HeroController> heroFactory, Supplier<EnemyController> enemyFactory, int trials, long seed)
+    {
+    	return runExperimentParallel(heroFactory, enemyFactory, trials, seed, Runtime.getRuntime().availableProcessors());
+    }
+
+    /*
+     * Parallel version of runExperiment(-): every worker thread has its own game and its own controllers (obtained from
+     * the factories). Each trial is a game with its own seed, derived from the given seed, so that the result does not
+     * depend on the number of threads (see Experiment).
+     */
+    public ExperimentReport runExperimentParallel(Supplier<HeroController> heroFactory, Supplier<EnemyController> enemyFactory, int trials, long seed, int threads)
+    {
+    	Experiment experiment = new Experiment(heroFactory, enemyFactory, seed, threads);
+
+    	try
+    	{
+    		experiment.play(trials);
+    	}
+    	finally
+    	{
+    		experiment.shutdown();
+    	}
+
+    	ExperimentReport report = experiment.getReport();
+    	System.out.println(report);
+    	return report;
+    }
+
+    /*
+     * Plays games (in parallel, in batches) until the confidence interval of the mean score is at most +/- targetHalfWidth
+     * wide at the 95% level over all the checks (see Experiment.runUntil(-)), or maxTrials games have been played.
+     */
+    public ExperimentReport runExperimentUntil(Supplier<HeroController> heroFactory, Supplier<EnemyController> enemyFactory, double targetHalfWidth, int maxTrials, long seed)
+    {
+    	Experiment experiment = new Experiment(heroFactory, enemyFactory, seed);
+
+    	try
+    	{
+    		experiment.runUntil(targetHalfWidth, Experiment.BATCH_SIZE, maxTrials);
+    	}
+    	finally
+    	{
+    		experiment.shutdown();
+    	}
+
+    	ExperimentReport report = experiment.getReport();
+    	System.out.println(report);
+    	return report;
+    }
+
+    /*
+     * Plays games of two hero/enemy pairings (in parallel, in batches) until their mean scores are significantly different
+     * (at the 95% level over all the checks, see Experiment.compare(-)) or maxTrials games each have been played. Returns 1 if the first pairing scores higher, -1 if the second does and 0
+     * if they could not be separated.
+     */
+    public int compareExperiments(Supplier<HeroController> firstHero, Supplier<EnemyController> firstEnemy, Supplier<HeroController> secondHero,
+    		Supplier<EnemyController> secondEnemy, int maxTrials, long seed)
+    {
+    	ExecutorService executor = newWorkerPool();
+    	Experiment first = new Experiment(firstHero, firstEnemy, seed, executor);
+    	Experiment second = new Experiment(secondHero, secondEnemy, new GameRandom(seed).split().nextLong(), executor);
+
+    	try
+    	{
+    		double alpha = Experiment.getCheckAlpha(0, Experiment.BATCH_SIZE, maxTrials);
+    		int result = Experiment.compare(first, second, Experiment.BATCH_SIZE, maxTrials);
+
+    		System.out.println(first.getReport());
+    		System.out.println(second.getReport());
+    		System.out.println(result == 0 ? "not separated" : (result > 0 ? "first" : "second") + String.format(" scores higher (95%% level overall, %.3g%% per check)", 100 * alpha));
+    		return result;
+    	}
+    	finally
+    	{
+    		first.shutdown();
+    		second.shutdown();
+    		executor.shutdownNow();
+    	}
+    }
+    
+    /*
+     * A/B test of two heroes against the same enemy with common random numbers: both play the same games (same seeds for
+     * the engine and for the controllers' random numbers) and the comparison uses the per-game differences in score.
+     * Stops once the difference is significant or maxTrials games each have been played. Returns 1 if the first hero
+     * scores higher, -1 if the second does and 0 if they could not be separated.
+     */
+    public int comparePaired(Supplier<HeroController> firstHero, Supplier<HeroController> secondHero, Supplier<EnemyController> enemy,
+    		int maxTrials, long seed)
+    {
+    	ExecutorService executor = newWorkerPool();
+    	Experiment first = new Experiment(firstHero, enemy, seed, executor);
+    	Experiment second = new Experiment(secondHero, enemy, seed, executor);
+
+    	try
+    	{
+    		double alpha = Experiment.getCheckAlpha(0, Experiment.BATCH_SIZE, maxTrials);
+    		int result = Experiment.comparePaired(first, second, Experiment.BATCH_SIZE, maxTrials);
+
+    		double[] differences = Experiment.getDifferences(first, second);
+    		double mean = Statistics.mean(differences);
+    		double halfWidth = Statistics.halfWidth(differences, alpha);
+    		double unpaired = Statistics.welchHalfWidth(first.getReport().getScores(), second.getReport().getScores(), alpha);
+
+    		System.out.println(first.getReport());
+    		System.out.println(second.getReport());
+    		System.out.println(String.format("mean difference %.1f, %.3g%% CI [%.1f, %.1f] (level of each check) over %d paired games (unpaired CI would be +/- %.1f)",
+    				mean, 100 * (1 - alpha), mean - halfWidth, mean + halfWidth, differences.length, unpaired));
+    		System.out.println(result == 0 ? "not separated" : (result > 0 ? "first" : "second") + " scores higher (95% level overall)");
+    		return result;
+    	}
+    	finally
+    	{
+    		first.shutdown();
+    		second.shutdown();
+    		executor.shutdownNow();
+    	}
+    }
+    
+    /*
+     * Round-robin tournament between all the controllers in the example package and the agents in pakku.agent (plus
+     * both versions of AttractRepelGhosts, which take an argument). Prints the matrix of mean scores and the ratings,
+     * and saves the results of every pairing to the given CSV file.
+     */
+    public Tournament runTournament(int trials, long seed, String fileName)
+    {
+    	Tournament tournament = new Tournament();
+    	tournament.discover("game.controllers.examples", "pakku.agent");
+    	tournament.addEnemy("AttractGhosts", () -> new AttractRepelGhosts(true));
+    	tournament.addEnemy("RepelGhosts", () -> new AttractRepelGhosts(false));
+
+    	tournament.play(trials, seed, Runtime.getRuntime().availableProcessors());
+    	tournament.writeCsv(fileName);
+    	System.out.println(tournament);
+    	return tournament;
     }
     
     /*
@@ -112,9 +278,23 @@ public class Exec
      * For testing, this can be set to 0 for fasted game play.
      */
 	public void runGame(HeroController heroController, EnemyController enemyController, boolean visual, int delay)
+	{
+		runGame(heroController, enemyController, visual, delay, false);
+	}
+
+	/*
+	 * Same, but if concurrent is set, the enemy controller is updated on a helper thread at the same time as the hero
+	 * controller (see ControllerBarrier); both read the same snapshot of the game.
+	 */
+	public void runGame(HeroController heroController, EnemyController enemyController, boolean visual, int delay, boolean concurrent)
 	{
 //		Game.rng = new java.util.Random();
 		
+		TimedHeroController timedHero = new TimedHeroController(heroController);
+		TimedEnemyController timedEnemy = new TimedEnemyController(enemyController);
+		heroController = timedHero;
+		enemyController = timedEnemy;
+
 		game=new _Game_();
 		game.newGame();
 
@@ -126,12 +306,23 @@ public class Exec
 		heroController.init();
 		enemyController.init();
 
+		ControllerBarrier barrier=concurrent ? new ControllerBarrier() : null;
+
 		while(!game.gameOver())
 		{
-			long due=System.currentTimeMillis()+ Game.DELAY;
-			Game state = game.copy();
-			enemyController.update(state, due);
-			heroController.update(state, due);
+			final long due=System.currentTimeMillis()+ Game.DELAY;
+			final Game state = game.snapshot();
+
+			if(barrier==null)
+			{
+				enemyController.update(state, due);
+				heroController.update(state, due);
+			}
+			else
+			{
+				barrier.run(() -> timedEnemy.update(state, due), () -> timedHero.update(state, due));
+			}
+
 			game.advanceGame(heroController.getAction(), enemyController.getActions());
 
 	        try{Thread.sleep(delay);}catch(Exception e){}
@@ -140,8 +331,13 @@ public class Exec
 	        	gv.repaint();
 		}
 
+		if(barrier!=null)
+			barrier.close();
+
 		heroController.init();
 		enemyController.init();
+
+		printLatencies(timedHero, timedEnemy);
 	}
 	
     /*
@@ -152,8 +348,6 @@ public class Exec
 	{
 		game=new _Game_();
 		game.newGame();
-		pacMan=new PacMan(heroController);
-		ghosts=new Ghosts(enemyController);
 		
 		GameView gv=null;
 		
@@ -165,31 +359,24 @@ public class Exec
 				gv.getFrame().addKeyListener((Human) heroController);
 		}
 
+		TimedHeroController timedHero = new TimedHeroController(heroController);
+		TimedEnemyController timedEnemy = new TimedEnemyController(enemyController);
+		GameClock clock=new GameClock(timedHero,timedEnemy,_Game.DELAY);
+
 		heroController.init();
 		enemyController.init();
 
 		while(!game.gameOver())
 		{
-			pacMan.alert();
-			ghosts.alert();
-
-			try
-			{
-				Thread.sleep(_Game.DELAY);
-			}
-			catch(InterruptedException e)
-			{
-				e.printStackTrace();
-			}
-
-	        game.advanceGame(pacDir,ghostDirs);	        
+	        clock.tick(game);
 	        
 	        if(visual)
 	        	gv.repaint();
 		}
 		
-		pacMan.kill();
-		ghosts.kill();
+		clock.shutdown();
+		System.out.println(clock);
+		printLatencies(timedHero, timedEnemy);
 	}
 	
 	/*
@@ -204,8 +391,6 @@ public class Exec
 		
 		game=new _Game_();
 		game.newGame();
-		pacMan=new PacMan(heroController);
-		ghosts=new Ghosts(enemyController);
 		
 		GameView gv=null;
 		
@@ -217,24 +402,16 @@ public class Exec
 				gv.getFrame().addKeyListener((Human) heroController);
 		}
 
+		TimedHeroController timedHero = new TimedHeroController(heroController);
+		TimedEnemyController timedEnemy = new TimedEnemyController(enemyController);
+		GameClock clock=new GameClock(timedHero,timedEnemy,_Game.DELAY);
+
 		heroController.init();
 		enemyController.init();
 
 		while(!game.gameOver())
 		{
-			pacMan.alert();
-			ghosts.alert();
-
-			try
-			{
-				Thread.sleep(_Game.DELAY);
-			}
-			catch(InterruptedException e)
-			{
-				e.printStackTrace();
-			}
-
-	        int[] actionsTaken=game.advanceGame(pacDir,ghostDirs);	        
+	        int[] actionsTaken=clock.tick(game);
 	        
 	        if(visual)
 	        	gv.repaint();
@@ -250,14 +427,15 @@ public class Exec
         	}	   
 		}
 
+		clock.shutdown();
+		System.out.println(clock);
+		printLatencies(timedHero, timedEnemy);
+
 		heroController.shutdown();
 		enemyController.shutdown();
 
 		//save the final actions
 		Replay.saveActions(history,fileName,firstWrite);
-		
-		pacMan.kill();
-		ghosts.kill();
 	}
 	
 	/*
@@ -270,8 +448,8 @@ public class Exec
 		game.newGame();
 
 		Replay replay=new Replay(fileName);
-		HeroController heroController = replay.getPacMan();
-		EnemyController enemyController = replay.getGhosts();
+		TimedHeroController heroController = new TimedHeroController(replay.getPacMan());
+		TimedEnemyController enemyController = new TimedEnemyController(replay.getGhosts());
 
 		heroController.init();
 		enemyController.init();
@@ -280,9 +458,10 @@ public class Exec
 		
 		while(!game.gameOver())
 		{
-			Game state = game.copy();
-			enemyController.update(state, 0);
-			heroController.update(state, 0);
+			Game state = game.snapshot();
+			long due=System.currentTimeMillis()+ _Game.DELAY;
+			enemyController.update(state, due);
+			heroController.update(state, due);
 	        game.advanceGame(heroController.getAction(), enemyController.getActions());
 	        
 	        gv.repaint();
@@ -292,8 +471,16 @@ public class Exec
 
 		heroController.shutdown();
 		enemyController.shutdown();
+
+		printLatencies(heroController, enemyController);
 	}
 	
+    private static void printLatencies(TimedHeroController heroController, TimedEnemyController enemyController)
+    {
+    	System.out.println("hero latency:  "+heroController.getLatency());
+    	System.out.println("enemy latency: "+enemyController.getLatency());
+    }
+
     private String addActionsToString(String history,int[] actionsTaken)
     {
     	history+=(game.getTotalTime()-1)+"\t"+actionsTaken[0]+"\t";
@@ -305,118 +492,15 @@ public class Exec
         
         return history;
     }
-    	
-	//sets the latest direction to take for each game step (if controller replies in time)
-	public void setGhostDirs(int[] ghostDirs)
-	{
-		this.ghostDirs=ghostDirs;
-		this.ghostsPlayed=true;
-	}
-	
-	//sets the latest direction to take for each game step (if controller replies in time)
-	public void setPacDir(int pacDir)
-	{
-		this.pacDir=pacDir;
-		this.pacmanPlayed=true;
-	}
-	
-	/*
-	 * Wraps the controller in a thread for the timed execution. This class then updates the
-	 * directions for Exec to parse to the game.
-	 */
-	public class PacMan extends Thread 
-	{
-	    private HeroController pacMan;
-	    private boolean alive;
-
-	    public PacMan(HeroController pacMan)
-	    {
-	        this.pacMan=pacMan;
-	        alive=true;
-	        start();
-	    }
-
-	    public synchronized void kill() 
-	    {
-	        alive=false;
-	        notify();
-	    }
-	    
-	    public synchronized void alert()
-	    {
-	        notify();
-	    }
-
-	    public void run() 
-	    {
-	        while(alive) 
-	        {
-	        	try 
-	        	{
-	        		synchronized(this)
-	        		{
-	        			wait();
-	                }
-
-					Game state = game.copy();
-					pacMan.update(state, System.currentTimeMillis() + Game.DELAY);
-	        		setPacDir(pacMan.getAction());
-	            } 
-	        	catch(InterruptedException e) 
-	        	{
-	                e.printStackTrace();
-	            }
-	        }
-	    }
-	}
-	
-	/*
-	 * Wraps the controller in a thread for the timed execution. This class then updates the
-	 * directions for Exec to parse to the game.
-	 */
-	public class Ghosts extends Thread 
-	{
-		private EnemyController ghosts;
-	    private boolean alive;
-
-	    public Ghosts(EnemyController ghosts)
-	    {	    	
-	    	this.ghosts=ghosts;
-	        alive=true;
-	        start();
-	    }
-
-	    public synchronized void kill() 
-	    {
-	        alive=false;
-	        notify();
-	    }
-
-	    public synchronized void alert() 
-	    {
-	        notify();
-	    }
-	    
-	    public void run() 
-	    {
-	        while(alive) 
-	        {
-	        	try 
-	        	{
-	        		synchronized(this)
-	        		{
-	        			wait();
-	                }
-
-					Game state = game.copy();
-					ghosts.update(state, System.currentTimeMillis()+ Game.DELAY);
-	        		setGhostDirs(ghosts.getActions());
-	            } 
-	        	catch(InterruptedException e) 
-	        	{
-	                e.printStackTrace();
-	            }
-	        }
-	    }
-	}
-}
\ No newline at end of file
+
+    //Worker threads shared by the experiments of a comparison, so that they do not oversubscribe the processors
+    private static ExecutorService newWorkerPool()
+    {
+    	return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable ->
+    	{
+    		Thread thread = new Thread(runnable, "experiment-worker");
+    		thread.setDaemon(true);
+    		return thread;
+    	});
+    }
+}
@@ -0,0 +1,436 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import game.controllers.EnemyController;
+import game.controllers.HeroController;
+import game.controllers.SharedStateController;
+import game.models.Game;
+import game.models.GameRandom;
+import game.system._Game;
+import game.system._Game_;
+
+/*
+ * Plays the trials of an experiment, i.e., games between a hero and an enemy controller. Trial i always gets the same
+ * seed (derived from the seed of the experiment), which determines the random events of the game and the random
+ * numbers the controllers draw from Game.rng. The trials are spread over a pool of worker threads, each with its own
+ * game and its own controllers (from the factories). Provided the controllers reset themselves in init(), the outcome
+ * of every trial does not depend on the number of threads or on which worker played it.
+ *
+ * Trials can be played in batches until the estimate of the mean score is precise enough (runUntil(-)), or until two
+ * experiments are statistically separated (compare(-)). Two experiments with the same seed play their trials on the
+ * same seeds, i.e., with common random numbers: comparePaired(-) then tests the per-trial differences, which usually
+ * vary far less than the scores themselves.
+ */
+public class Experiment
+{
+	public static final int BATCH_SIZE = 100;		//trials played between two checks of a stopping rule
+	public static final double ALPHA = 0.05;		//overall significance level of the stopping rules
+
+	private final long seed;
+	private final GameRandom seeds;
+	private final ExecutorService executor;
+	private final boolean ownsExecutor;
+	private final ThreadLocal<Worker> workers;
+	private final List<Worker> allWorkers = new ArrayList<Worker>();
+	private final ArrayList<TrialResult> results = new ArrayList<TrialResult>();
+	private volatile boolean concurrentControllers;
+	private volatile boolean decisionsOnly;
+
+	public Experiment(Supplier<HeroController> heroFactory, Supplier<EnemyController> enemyFactory, long seed)
+	{
+		this(heroFactory, enemyFactory, seed, Runtime.getRuntime().availableProcessors());
+	}
+
+	public Experiment(Supplier<HeroController> heroFactory, Supplier<EnemyController> enemyFactory, long seed, int threads)
+	{
+		this(heroFactory, enemyFactory, seed, Executors.newFixedThreadPool(threads, runnable ->
+		{
+			Thread thread = new Thread(runnable, "experiment-worker");
+			thread.setDaemon(true);
+			return thread;
+		}), true);
+	}
+
+	/*
+	 * Experiment whose trials are played by the given executor, which may be shared with other experiments (e.g., all
+	 * pairings of a tournament). Each experiment still has its own controllers on every thread, reused for the trials
+	 * that thread plays (see HeroController.init()). The executor is not shut down by shutdown().
+	 */
+	public Experiment(Supplier<HeroController> heroFactory, Supplier<EnemyController> enemyFactory, long seed, ExecutorService executor)
+	{
+		this(heroFactory, enemyFactory, seed, executor, false);
+	}
+
+	private Experiment(final Supplier<HeroController> heroFactory, final Supplier<EnemyController> enemyFactory, long seed, ExecutorService executor,
+			boolean ownsExecutor)
+	{
+		this.seed = seed;
+		this.seeds = new GameRandom(seed);
+		this.executor = executor;
+		this.ownsExecutor = ownsExecutor;
+		this.workers = ThreadLocal.withInitial(() ->
+		{
+			Worker worker = new Worker(heroFactory.get(), enemyFactory.get());
+
+			synchronized (allWorkers)
+			{
+				allWorkers.add(worker);
+			}
+
+			return worker;
+		});
+	}
+
+	/*
+	 * Whether the hero and the enemy controller of each game are updated at the same time (see ControllerBarrier), which
+	 * shortens the games when both controllers search but doubles the number of threads.
+	 */
+	public void setConcurrentControllers(boolean concurrentControllers)
+	{
+		this.concurrentControllers = concurrentControllers;
+	}
+
+	/*
+	 * Whether the controllers are only updated in the ticks in which they have a choice to make (see playTrial(-)).
+	 * This plays a different game from the per-tick one: the hero cannot reverse in the middle of a corridor, the
+	 * enemies repeat their stale actions between decisions, and the controllers draw fewer numbers from Game.rng, so
+	 * the random events of the game fall differently. Scores of the two modes are not comparable, and compare(-) and
+	 * comparePaired(-) refuse to mix them.
+	 */
+	public void setDecisionsOnly(boolean decisionsOnly)
+	{
+		this.decisionsOnly = decisionsOnly;
+	}
+
+	//Plays the next trials and returns their results (in the order of the trials)
+	public List<TrialResult> play(int trials)
+	{
+		return collect(submit(trials));
+	}
+
+	//Plays the next trials of several experiments at the same time (their trials are all queued before waiting for any)
+	public static void play(List<Experiment> experiments, int trials)
+	{
+		List<List<Future<TrialResult>>> submitted = new ArrayList<List<Future<TrialResult>>>(experiments.size());
+
+		for (Experiment experiment : experiments)
+			submitted.add(experiment.submit(trials));
+
+		for (int i = 0; i < experiments.size(); i++)
+			experiments.get(i).collect(submitted.get(i));
+	}
+
+	private List<Future<TrialResult>> submit(int trials)
+	{
+		List<Future<TrialResult>> futures = new ArrayList<Future<TrialResult>>(trials);
+
+		for (int i = 0; i < trials; i++)
+		{
+			final long seed = nextSeed();
+			futures.add(executor.submit(() -> workers.get().play(seed, concurrentControllers, decisionsOnly)));
+		}
+
+		return futures;
+	}
+
+	private List<TrialResult> collect(List<Future<TrialResult>> futures)
+	{
+		List<TrialResult> played = new ArrayList<TrialResult>(futures.size());
+
+		try
+		{
+			for (Future<TrialResult> future : futures)
+				played.add(future.get());
+		}
+		catch (InterruptedException | ExecutionException e)
+		{
+			throw new RuntimeException(e);
+		}
+
+		results.addAll(played);
+		return played;
+	}
+
+	/*
+	 * Significance level of each check of a stopping rule that may look at the trials after every batch from played
+	 * up to maxTrials (counting the checks once minTrials have been played). Checking a 95% interval after every batch
+	 * would stop on a chance fluctuation far more often than 5% of the time, so ALPHA is split evenly over the checks
+	 * (Bonferroni): the rule then holds the 95% level over all its checks, if conservatively.
+	 */
+	public static double getCheckAlpha(int played, int minTrials, int maxTrials)
+	{
+		int checks = 0;
+
+		for (int trials = played; trials < maxTrials; )
+		{
+			trials = Math.min(trials + BATCH_SIZE, maxTrials);
+
+			if (trials >= minTrials)
+				checks++;
+		}
+
+		return ALPHA / Math.max(1, checks);
+	}
+
+	/*
+	 * Plays batches of trials until the confidence interval of the mean score is at most +/- targetHalfWidth wide
+	 * (checked after every batch, once at least minTrials have been played) or maxTrials have been played. The
+	 * interval checked is the 1-getCheckAlpha(-) one, so the target holds at the 95% level whenever the rule stops;
+	 * the report shows the plain (narrower) 95% interval of the trials played.
+	 */
+	public ExperimentReport runUntil(double targetHalfWidth, int minTrials, int maxTrials)
+	{
+		double alpha = getCheckAlpha(results.size(), minTrials, maxTrials);
+
+		while (results.size() < maxTrials)
+		{
+			play(Math.min(BATCH_SIZE, maxTrials - results.size()));
+
+			if (results.size() >= minTrials && Statistics.halfWidth(getReport().getScores(), alpha) <= targetHalfWidth)
+				break;
+		}
+
+		return getReport();
+	}
+
+	/*
+	 * Plays batches of trials of two experiments until the difference between their mean scores is significant
+	 * (Welch's test, checked after every batch once both have played minTrials) or both have played maxTrials. Each
+	 * check is made at the level getCheckAlpha(-), so that the rule as a whole wrongly separates two equal experiments
+	 * at most 5% of the time. Returns 1 if the first experiment scores higher, -1 if the second does and 0 if they could
+	 * not be separated.
+	 */
+	public static int compare(Experiment first, Experiment second, int minTrials, int maxTrials)
+	{
+		if (first.decisionsOnly != second.decisionsOnly)
+			throw new IllegalArgumentException("compared experiments must both be decision-only or both per-tick");
+
+		double alpha = getCheckAlpha(first.results.size(), minTrials, maxTrials);
+
+		while (first.results.size() < maxTrials)
+		{
+			int batch = Math.min(BATCH_SIZE, maxTrials - first.results.size());
+			play(Arrays.asList(first, second), batch);
+
+			if (first.results.size() < minTrials)
+				continue;
+
+			double[] a = first.getReport().getScores();
+			double[] b = second.getReport().getScores();
+			double difference = Statistics.mean(a) - Statistics.mean(b);
+
+			if (Math.abs(difference) > Statistics.welchHalfWidth(a, b, alpha))
+				return difference > 0 ? 1 : -1;
+		}
+
+		return 0;
+	}
+
+	/*
+	 * Paired version of compare(-) for two experiments with the same seed (e.g., two heroes against the same enemy):
+	 * trial i of both is played on the same seed, so the engine's random events are the same in both (as long as the
+	 * games do not diverge) and the controllers draw the same random numbers. Stops once the confidence interval of the
+	 * mean difference (first-second) excludes 0, checked after every batch once minTrials have been played. As in
+	 * compare(-), each check uses the 1-getCheckAlpha(-) interval so that the rule holds the 95% level overall.
+	 */
+	public static int comparePaired(Experiment first, Experiment second, int minTrials, int maxTrials)
+	{
+		if (first.seed != second.seed || first.results.size() != second.results.size())
+			throw new IllegalArgumentException("paired experiments must have the same seed and number of trials");
+
+		if (first.decisionsOnly != second.decisionsOnly)
+			throw new IllegalArgumentException("compared experiments must both be decision-only or both per-tick");
+
+		double alpha = getCheckAlpha(first.results.size(), minTrials, maxTrials);
+
+		while (first.results.size() < maxTrials)
+		{
+			int batch = Math.min(BATCH_SIZE, maxTrials - first.results.size());
+			play(Arrays.asList(first, second), batch);
+
+			if (first.results.size() < minTrials)
+				continue;
+
+			double[] differences = getDifferences(first, second);
+			double difference = Statistics.mean(differences);
+
+			if (Math.abs(difference) > Statistics.halfWidth(differences, alpha))
+				return difference > 0 ? 1 : -1;
+		}
+
+		return 0;
+	}
+
+	//Per-trial score differences (first-second) of two experiments with the same seed
+	public static double[] getDifferences(Experiment first, Experiment second)
+	{
+		double[] differences = new double[Math.min(first.results.size(), second.results.size())];
+
+		for (int i = 0; i < differences.length; i++)
+			differences[i] = first.results.get(i).score - second.results.get(i).score;
+
+		return differences;
+	}
+
+	//Report of the trials played so far, including the latencies of the controllers of all the workers
+	public ExperimentReport getReport()
+	{
+		LatencyHistogram heroLatency = new LatencyHistogram();
+		LatencyHistogram enemyLatency = new LatencyHistogram();
+
+		synchronized (allWorkers)
+		{
+			for (Worker worker : allWorkers)
+			{
+				heroLatency.add(worker.heroController.getLatency());
+				enemyLatency.add(worker.enemyController.getLatency());
+			}
+		}
+
+		return new ExperimentReport(results, heroLatency, enemyLatency);
+	}
+
+	//Stops the worker threads (unless the executor was provided) and the helper threads of the workers
+	public void shutdown()
+	{
+		if (ownsExecutor)
+			executor.shutdownNow();
+
+		synchronized (allWorkers)
+		{
+			for (Worker worker : allWorkers)
+				if (worker.barrier != null)
+					worker.barrier.close();
+		}
+	}
+
+	private long nextSeed()
+	{
+		return seeds.split().nextLong();
+	}
+
+	/*
+	 * Plays one game with the given seed and records its outcome. Deaths are attributed to the maze in which they
+	 * happen: the lives lost in a tick are the drop in lives plus the extra life if it was awarded in the same tick.
+	 */
+	public static TrialResult playTrial(_Game_ game, HeroController heroController, EnemyController enemyController, long seed)
+	{
+		return playTrial(game, heroController, enemyController, null, false, seed);
+	}
+
+	/*
+	 * Same, but if a barrier is given, the enemy controller is updated on the barrier's helper thread at the same time
+	 * as the hero controller (both read the same snapshot of the state, see SharedStateController). Game.rng is per-thread, so the enemy controller then
+	 * draws its random numbers from a separate stream (also seeded from the trial's seed): games are reproducible, but
+	 * not the same as when the controllers take turns.
+	 *
+	 * If decisionsOnly is set, a controller is only updated in the ticks in which it has a choice to make (see
+	 * _Game.heroMustDecide() and enemiesMustDecide()). Otherwise the hero follows its corridor (it never reverses in
+	 * the middle of one) and the enemies repeat their last actions (which the game turns into going on along their
+	 * corridors). As the controllers are called less often, they draw fewer numbers from Game.rng, and the game's own
+	 * random choices (e.g., the enemies' random fallback in _Game.checkEnemyDir(-)) come out differently: a decision-only
+	 * trial is not the same game as the per-tick trial on the same seed.
+	 */
+	public static TrialResult playTrial(_Game_ game, final HeroController heroController, final EnemyController enemyController, ControllerBarrier barrier,
+			boolean decisionsOnly, final long seed)
+	{
+		int[] deathsPerMaze = new int[Game.NUM_MAZES];
+
+		game.newGame(seed);
+
+		//the controllers' streams are split from the seed: reseeding with a simple function of it (e.g., ~seed) would
+		//give java.util.Random a sequence that mirrors the engine's
+		GameRandom seeds = new GameRandom(seed);
+		final long controllerSeed = seeds.split().nextLong();
+
+		if (barrier == null)
+			Game.rng.setSeed(controllerSeed);
+		else
+		{
+			final long helperSeed = seeds.split().nextLong();
+			barrier.run(() -> Game.rng.setSeed(helperSeed), () -> Game.rng.setSeed(controllerSeed));
+		}
+
+		heroController.init();
+		enemyController.init();
+
+		int heroAction = -1;
+		int[] enemyActions = null;
+		boolean first = true;
+
+		while(!game.gameOver())
+		{
+			int lives = game.getLivesRemaining();
+			int maze = game.getCurMazeNum();
+			int score = game.getScore();
+
+			boolean heroDecides = !decisionsOnly || first || game.heroMustDecide();
+			boolean enemiesDecide = !decisionsOnly || first || game.enemiesMustDecide();
+			first = false;
+
+			if (heroDecides || enemiesDecide)
+			{
+				final long due=System.currentTimeMillis()+ _Game.DELAY;
+				final Game state = game.snapshot();
+
+				if (barrier != null && heroDecides && enemiesDecide)
+					barrier.run(() -> enemyController.update(SharedStateController.stateFor(enemyController, state), due),
+							() -> heroController.update(SharedStateController.stateFor(heroController, state), due));
+				else
+				{
+					if (enemiesDecide)
+						enemyController.update(SharedStateController.stateFor(enemyController, state), due);
+
+					if (heroDecides)
+						heroController.update(SharedStateController.stateFor(heroController, state), due);
+				}
+			}
+
+			heroAction = heroDecides ? heroController.getAction() : game.getCorridorDirection();
+
+			if (enemiesDecide)
+				enemyActions = enemyController.getActions();
+
+			game.advanceGame(heroAction, enemyActions);
+
+			int extraLife = score < Game.EXTRA_LIFE_SCORE && game.getScore() >= Game.EXTRA_LIFE_SCORE ? 1 : 0;
+			deathsPerMaze[maze] += lives - game.getLivesRemaining() + extraLife;
+		}
+
+		heroController.shutdown();
+		enemyController.shutdown();
+
+		return new TrialResult(seed, game.getScore(), game.getCurLevel(), game.getTotalTime(), deathsPerMaze);
+	}
+
+	//Game and controllers of one worker thread
+	private static class Worker
+	{
+		private final _Game_ game = new _Game_();
+		private final TimedHeroController heroController;
+		private final TimedEnemyController enemyController;
+		private ControllerBarrier barrier;
+
+		Worker(HeroController heroController, EnemyController enemyController)
+		{
+			this.heroController = new TimedHeroController(heroController);
+			this.enemyController = new TimedEnemyController(enemyController);
+		}
+
+		TrialResult play(long seed, boolean concurrent, boolean decisionsOnly)
+		{
+			if (concurrent && barrier == null)
+				barrier = new ControllerBarrier();
+
+			return playTrial(game, heroController, enemyController, concurrent ? barrier : null, decisionsOnly, seed);
+		}
+	}
+}
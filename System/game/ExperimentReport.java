@@ -0,0 +1,105 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import game.models.Game;
+
+/*
+ * Summary of the trials of an experiment: mean, standard deviation, 95% confidence interval and percentiles of the
+ * score, the level reached, the length of the game and the lives lost, plus the deaths per maze and (if recorded)
+ * the latencies of the controllers. The intervals are those of a fixed number of trials: if the number was chosen by a
+ * stopping rule, see Experiment.getCheckAlpha(-) for the level that rule holds.
+ */
+public class ExperimentReport
+{
+    private final List<TrialResult> trials;
+    private final LatencyHistogram heroLatency, enemyLatency;
+
+    public ExperimentReport(List<TrialResult> trials)
+    {
+        this(trials, null, null);
+    }
+
+    public ExperimentReport(List<TrialResult> trials, LatencyHistogram heroLatency, LatencyHistogram enemyLatency)
+    {
+        this.trials = new ArrayList<TrialResult>(trials);
+        this.heroLatency = heroLatency;
+        this.enemyLatency = enemyLatency;
+    }
+
+    public List<TrialResult> getTrials() { return trials; }
+    public int getNumberOfTrials() { return trials.size(); }
+
+    public double[] getScores()
+    {
+        double[] scores = new double[trials.size()];
+
+        for (int i = 0; i < scores.length; i++)
+            scores[i] = trials.get(i).score;
+
+        return scores;
+    }
+
+    public LatencyHistogram getHeroLatency() { return heroLatency; }
+    public LatencyHistogram getEnemyLatency() { return enemyLatency; }
+
+    public double getMeanScore() { return Statistics.mean(getScores()); }
+    public double getScoreHalfWidth() { return Statistics.halfWidth(getScores()); }
+
+    public String toString()
+    {
+        double[] levels = new double[trials.size()];
+        double[] times = new double[trials.size()];
+        double[] livesLost = new double[trials.size()];
+        double[] deaths = new double[Game.NUM_MAZES];
+
+        for (int i = 0; i < trials.size(); i++)
+        {
+            TrialResult trial = trials.get(i);
+            levels[i] = trial.level;
+            times[i] = trial.totalTime;
+            livesLost[i] = trial.livesLost;
+
+            for (int maze = 0; maze < deaths.length; maze++)
+                deaths[maze] += trial.deathsPerMaze[maze];
+        }
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%d trials%n", trials.size()));
+        report.append(String.format("%-12s%10s%10s%24s%10s%10s%10s%10s%10s%10s%10s%n", "", "mean", "sd", "95% CI", "min", "p5", "p25", "median", "p75", "p95", "max"));
+        appendRow(report, "score", getScores());
+        appendRow(report, "level", levels);
+        appendRow(report, "time", times);
+        appendRow(report, "lives lost", livesLost);
+
+        report.append("deaths per game in maze");
+        for (int maze = 0; maze < deaths.length; maze++)
+            report.append(String.format("  %d: %.3f", maze, trials.isEmpty() ? 0 : deaths[maze] / trials.size()));
+
+        report.append(String.format("%n"));
+
+        double ticks = 0;
+        for (TrialResult trial : trials)
+            ticks += trial.totalTime;
+
+        if (heroLatency != null)
+            report.append(String.format("hero latency:  %s (%.1f%% of ticks)%n", heroLatency, 100 * heroLatency.getCount() / ticks));
+
+        if (enemyLatency != null)
+            report.append(String.format("enemy latency: %s (%.1f%% of ticks)%n", enemyLatency, 100 * enemyLatency.getCount() / ticks));
+
+        return report.toString();
+    }
+
+    private static void appendRow(StringBuilder report, String name, double[] values)
+    {
+        double mean = Statistics.mean(values);
+        double halfWidth = Statistics.halfWidth(values);
+
+        report.append(String.format("%-12s%10.1f%10.1f%24s%10.0f%10.0f%10.0f%10.0f%10.0f%10.0f%10.0f%n", name, mean, Statistics.standardDeviation(values),
+                String.format("[%.1f, %.1f]", mean - halfWidth, mean + halfWidth), Statistics.percentile(values, 0), Statistics.percentile(values, 5),
+                Statistics.percentile(values, 25), Statistics.percentile(values, 50), Statistics.percentile(values, 75), Statistics.percentile(values, 95),
+                Statistics.percentile(values, 100)));
+    }
+}
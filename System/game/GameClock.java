@@ -0,0 +1,284 @@
+package game;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import game.controllers.AnytimeEnemyController;
+import game.controllers.AnytimeHeroController;
+import game.controllers.EnemyController;
+import game.controllers.HeroController;
+import game.controllers.SharedStateController;
+import game.models.Game;
+import game.system.StateChannel;
+import game.system._Game_;
+
+/*
+ * Fixed-timestep clock for the timed games. Tick i starts at start+i*period (so time spent advancing the game and
+ * repainting does not accumulate as drift): both controllers are given the same read-only snapshot of the game (see
+ * Game.snapshot(); controllers that do not implement SharedStateController get a copy of it), published once per
+ * tick, and then have until the end of the tick (the deadline) to reply. The game then advances with the latest
+ * actions the controllers have returned: a controller that misses the deadline keeps its previous action (its late
+ * reply is used in the next tick, during which it is not given a new state).
+ *
+ * Anytime controllers (see AnytimeHeroController) never miss the deadline: the action they have published by then is
+ * taken and their computation is interrupted (counted as a cut-off), so they start afresh on the next state.
+ *
+ * After every tick the live state is also published through a StateChannel (see getChannel()), from which any other
+ * thread (e.g., a controller thinking ahead between ticks) can read the latest state without blocking the game.
+ *
+ * The controllers run on a pool of two threads, so that the hero and the enemies compute at the same time. A
+ * controller is only given a new state once its previous update(-) has returned (even if it was interrupted). A missed
+ * deadline or a cut-off is counted once, in the tick whose state the controller was given; the ticks it then spends
+ * busy with that state are counted apart (see getHeroBusyTicks()).
+ */
+public class GameClock
+{
+	private final HeroController heroController;
+	private final EnemyController enemyController;
+	private final long period;
+	private final ExecutorService executor;
+
+	private final StateChannel channel = new StateChannel();
+	private volatile Game published;
+	private volatile int heroAction = -1;
+	private volatile int[] enemyActions;
+	private final boolean heroAnytime, enemyAnytime;
+	private final Semaphore heroIdle = new Semaphore(1), enemyIdle = new Semaphore(1);
+	private Future<?> heroTask, enemyTask;
+
+	private long start = -1;
+	private long ticks;
+	private int heroMisses, enemyMisses, heroCutoffs, enemyCutoffs, heroBusy, enemyBusy, lateTicks;
+
+	//period: length of a tick in milliseconds
+	public GameClock(HeroController heroController, EnemyController enemyController, long period)
+	{
+		this.heroController = heroController;
+		this.enemyController = enemyController;
+		this.period = TimeUnit.MILLISECONDS.toNanos(period);
+		this.heroAnytime = unwrap(heroController) instanceof AnytimeHeroController;
+		this.enemyAnytime = unwrap(enemyController) instanceof AnytimeEnemyController;
+		this.enemyActions = new int[Game.NUM_ENEMY];
+		Arrays.fill(enemyActions, -1);
+		this.executor = Executors.newFixedThreadPool(2, runnable ->
+		{
+			Thread thread = new Thread(runnable, "controller");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/*
+	 * Plays one tick: waits for the start of the tick, hands the controllers the current state, waits for their replies
+	 * until the deadline and advances the game. Returns the actions taken (see Game.advanceGame(-)).
+	 */
+	public int[] tick(_Game_ game)
+	{
+		long now = System.nanoTime();
+
+		if (start < 0)
+			start = now;
+
+		long tickStart = start + ticks * period;
+
+		//more than a full tick behind (e.g., a long repaint): skip ahead rather than rushing through the missed ticks
+		if (now - tickStart > period)
+		{
+			lateTicks++;
+			start = now - ticks * period;
+			tickStart = now;
+		}
+
+		sleepUntil(tickStart);
+
+		long deadline = tickStart + period;
+		final long due = System.currentTimeMillis() + TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+		final Game state = game.snapshot();
+		published = state;
+
+		boolean heroSubmitted = becomesIdle(heroIdle, heroTask);
+		boolean enemySubmitted = becomesIdle(enemyIdle, enemyTask);
+
+		if (heroSubmitted)
+		{
+			heroTask = executor.submit(() ->
+			{
+				try
+				{
+					heroController.update(SharedStateController.stateFor(heroController, state), due);
+					heroAction = heroController.getAction();
+				}
+				finally
+				{
+					heroIdle.release();
+				}
+			});
+		}
+
+		if (enemySubmitted)
+		{
+			enemyTask = executor.submit(() ->
+			{
+				try
+				{
+					enemyController.update(SharedStateController.stateFor(enemyController, state), due);
+					publishEnemyActions();
+				}
+				finally
+				{
+					enemyIdle.release();
+				}
+			});
+		}
+
+		//a controller still busy with an earlier state was not given this one: its deadline and cut-off were counted then
+		if (!heroSubmitted)
+			heroBusy++;
+		else if (!await(heroTask, deadline))
+		{
+			if (heroAnytime)
+			{
+				heroCutoffs++;
+				heroAction = heroController.getAction();
+				heroTask.cancel(true);
+			}
+			else
+				heroMisses++;
+		}
+
+		if (!enemySubmitted)
+			enemyBusy++;
+		else if (!await(enemyTask, deadline))
+		{
+			if (enemyAnytime)
+			{
+				enemyCutoffs++;
+				publishEnemyActions();
+				enemyTask.cancel(true);
+			}
+			else
+				enemyMisses++;
+		}
+
+		ticks++;
+
+		int[] actionsTaken = game.advanceGame(heroAction, enemyActions.clone());
+		channel.publish(game);
+
+		return actionsTaken;
+	}
+
+	//Snapshot given to the controllers in the latest tick (null before the first tick)
+	public Game getSnapshot() { return published; }
+
+	//Channel with the live state of the game, updated after every tick
+	public StateChannel getChannel() { return channel; }
+
+	public long getTicks() { return ticks; }
+	public int getHeroMisses() { return heroMisses; }
+	public int getEnemyMisses() { return enemyMisses; }
+	public int getHeroCutoffs() { return heroCutoffs; }
+	public int getEnemyCutoffs() { return enemyCutoffs; }
+	public int getHeroBusyTicks() { return heroBusy; }
+	public int getEnemyBusyTicks() { return enemyBusy; }
+	public int getLateTicks() { return lateTicks; }
+
+	//Stops the controller threads (controllers still computing are interrupted)
+	public void shutdown()
+	{
+		executor.shutdownNow();
+	}
+
+	public String toString()
+	{
+		return String.format("%d ticks of %d ms: hero missed %d deadlines, was cut off %d times and busy in %d ticks; "
+				+ "enemies missed %d, were cut off %d times and busy in %d ticks; %d ticks started late", ticks,
+				TimeUnit.NANOSECONDS.toMillis(period), heroMisses, heroCutoffs, heroBusy, enemyMisses, enemyCutoffs, enemyBusy, lateTicks);
+	}
+
+	private void publishEnemyActions()
+	{
+		int[] actions = enemyController.getActions();
+
+		if (actions != null)
+			enemyActions = actions;
+	}
+
+	//The controller wrapped by a TimedHeroController/TimedEnemyController (if any)
+	private static Object unwrap(Object controller)
+	{
+		if (controller instanceof TimedHeroController)
+			return ((TimedHeroController) controller).getController();
+
+		if (controller instanceof TimedEnemyController)
+			return ((TimedEnemyController) controller).getController();
+
+		return controller;
+	}
+
+	/*
+	 * Checks whether a controller has returned from its previous update(-) (taking its permit if so). A controller that
+	 * has just been interrupted is given a little time (an eighth of a tick) to notice, so that it does not skip a state.
+	 */
+	private boolean becomesIdle(Semaphore idle, Future<?> previous)
+	{
+		try
+		{
+			return idle.tryAcquire(previous != null && previous.isCancelled() ? period / 8 : 0, TimeUnit.NANOSECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	//Waits for the task until the deadline; returns whether it has completed
+	private static boolean await(Future<?> task, long deadline)
+	{
+		try
+		{
+			task.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+			return true;
+		}
+		catch (TimeoutException | CancellationException e)
+		{
+			return false;		//still running (possibly after having been interrupted)
+		}
+		catch (ExecutionException e)
+		{
+			e.getCause().printStackTrace();
+			return true;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private static void sleepUntil(long time)
+	{
+		long remaining;
+
+		while ((remaining = time - System.nanoTime()) > 0)
+		{
+			try
+			{
+				TimeUnit.NANOSECONDS.sleep(remaining);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+}
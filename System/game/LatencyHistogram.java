@@ -0,0 +1,137 @@
+package game;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Histogram of the time (in nanoseconds) taken by the calls to a controller. Like an HDR histogram, the buckets are
+ * log-linear: every power of two is split into SUB_BUCKETS buckets, so percentiles are accurate to about 3% whatever
+ * the scale, with a small fixed array and no allocation when recording. Also counts the calls that missed their
+ * deadline and keeps the slowest calls together with the game time at which they happened.
+ *
+ * Recording is not synchronized: a histogram should be recorded by one thread at a time (e.g., that of the controller)
+ * and histograms of different threads combined with add(-).
+ */
+public class LatencyHistogram
+{
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int WORST = 5;					//number of slowest calls kept
+
+	private final long[] counts = new long[(64 - SUB_BUCKET_BITS) * SUB_BUCKETS];
+	private long total, misses, max;
+
+	private final long[] worstLatencies = new long[WORST];
+	private final int[] worstTimes = new int[WORST];
+
+	//Records a call that took the given number of nanoseconds at the given game time
+	public void record(long latency, boolean missed, int gameTime)
+	{
+		latency = Math.max(0, latency);
+		counts[index(latency)]++;
+		total++;
+		max = Math.max(max, latency);
+
+		if (missed)
+			misses++;
+
+		addWorst(latency, gameTime);
+	}
+
+	//Adds the calls recorded by another histogram
+	public void add(LatencyHistogram other)
+	{
+		for (int i = 0; i < counts.length; i++)
+			counts[i] += other.counts[i];
+
+		total += other.total;
+		misses += other.misses;
+		max = Math.max(max, other.max);
+
+		for (int i = 0; i < WORST; i++)
+			if (other.worstLatencies[i] > 0)
+				addWorst(other.worstLatencies[i], other.worstTimes[i]);
+	}
+
+	public long getCount() { return total; }
+	public long getMisses() { return misses; }
+	public long getMax() { return max; }
+
+	//Latency (in nanoseconds) below which the given percentage of the calls fall (upper end of the bucket)
+	public long getPercentile(double percentile)
+	{
+		long rank = (long) Math.ceil(percentile / 100 * total);
+		long seen = 0;
+
+		for (int i = 0; i < counts.length; i++)
+		{
+			seen += counts[i];
+
+			if (seen >= Math.max(rank, 1))
+				return Math.min(upperBound(i), max);
+		}
+
+		return max;
+	}
+
+	public String toString()
+	{
+		StringBuilder summary = new StringBuilder(String.format("%d calls, p50 %s, p99 %s, p99.9 %s, max %s, %d missed deadlines", total,
+				format(getPercentile(50)), format(getPercentile(99)), format(getPercentile(99.9)), format(max), misses));
+
+		if (worstLatencies[0] > 0)
+		{
+			summary.append("; slowest:");
+
+			for (int i = 0; i < WORST && worstLatencies[i] > 0; i++)
+				summary.append(String.format("%s tick %d (%s)", i == 0 ? "" : ",", worstTimes[i], format(worstLatencies[i])));
+		}
+
+		return summary.toString();
+	}
+
+	private static String format(long nanos)
+	{
+		return String.format("%.3f ms", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+	}
+
+	//Keeps the slowest calls in decreasing order
+	private void addWorst(long latency, int gameTime)
+	{
+		if (latency <= worstLatencies[WORST - 1])
+			return;
+
+		int i = WORST - 1;
+
+		for (; i > 0 && worstLatencies[i - 1] < latency; i--)
+		{
+			worstLatencies[i] = worstLatencies[i - 1];
+			worstTimes[i] = worstTimes[i - 1];
+		}
+
+		worstLatencies[i] = latency;
+		worstTimes[i] = gameTime;
+	}
+
+	//Values below SUB_BUCKETS have a bucket each; above, the SUB_BUCKET_BITS bits after the leading one select the bucket
+	private static int index(long value)
+	{
+		if (value < SUB_BUCKETS)
+			return (int) value;
+
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int mantissa = (int) (value >>> (exponent - SUB_BUCKET_BITS));
+
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + mantissa - SUB_BUCKETS;
+	}
+
+	private static long upperBound(int index)
+	{
+		if (index < SUB_BUCKETS)
+			return index;
+
+		int exponent = (index >>> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+		long mantissa = (index & (SUB_BUCKETS - 1)) + SUB_BUCKETS;
+
+		return ((mantissa + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+}
@@ -0,0 +1,140 @@
+package game;
+
+import java.util.Arrays;
+
+/*
+ * Basic statistics for the experiments: means, standard deviations, confidence intervals, percentiles and the
+ * (Welch) test used to decide whether two controllers are separated. Intervals are 95% intervals unless a
+ * significance level (alpha, two-sided) is given, as the stopping rules of Experiment do.
+ */
+public final class Statistics
+{
+    private Statistics() { }
+
+    public static double mean(double[] values)
+    {
+        double sum = 0;
+
+        for (double value : values)
+            sum += value;
+
+        return values.length == 0 ? Double.NaN : sum / values.length;
+    }
+
+    //Sample standard deviation
+    public static double standardDeviation(double[] values)
+    {
+        if (values.length < 2)
+            return Double.NaN;
+
+        double mean = mean(values);
+        double sum = 0;
+
+        for (double value : values)
+            sum += (value - mean) * (value - mean);
+
+        return Math.sqrt(sum / (values.length - 1));
+    }
+
+    //Half-width of the 95% confidence interval of the mean
+    public static double halfWidth(double[] values)
+    {
+        return halfWidth(values, 0.05);
+    }
+
+    //Half-width of the 1-alpha confidence interval of the mean
+    public static double halfWidth(double[] values, double alpha)
+    {
+        if (values.length < 2)
+            return Double.POSITIVE_INFINITY;
+
+        return tCritical(values.length - 1, alpha) * standardDeviation(values) / Math.sqrt(values.length);
+    }
+
+    //Percentile (0-100) with linear interpolation between the closest ranks
+    public static double percentile(double[] values, double percentile)
+    {
+        if (values.length == 0)
+            return Double.NaN;
+
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        double rank = percentile / 100 * (sorted.length - 1);
+        int lower = (int) Math.floor(rank);
+        int upper = Math.min(lower + 1, sorted.length - 1);
+
+        return sorted[lower] + (rank - lower) * (sorted[upper] - sorted[lower]);
+    }
+
+    //Two-sided 95% critical value of Student's t distribution
+    public static double tCritical(double degreesOfFreedom)
+    {
+        return tCritical(degreesOfFreedom, 0.05);
+    }
+
+    //Two-sided 1-alpha critical value of Student's t distribution (Cornish-Fisher expansion around the normal quantile)
+    public static double tCritical(double degreesOfFreedom, double alpha)
+    {
+        double z = normalQuantile(1 - alpha / 2);
+        double z3 = z * z * z, z5 = z3 * z * z, z7 = z5 * z * z;
+        double df = degreesOfFreedom;
+
+        return z + (z3 + z) / (4 * df) + (5 * z5 + 16 * z3 + 3 * z) / (96 * df * df) + (3 * z7 + 19 * z5 + 17 * z3 - 15 * z) / (384 * df * df * df);
+    }
+
+    /*
+     * Welch's test for the difference of the means of two independent samples: returns the half-width of the 95%
+     * confidence interval of mean(a)-mean(b). The samples are separated if the difference exceeds it.
+     */
+    public static double welchHalfWidth(double[] a, double[] b)
+    {
+        return welchHalfWidth(a, b, 0.05);
+    }
+
+    //Same, for the 1-alpha confidence interval
+    public static double welchHalfWidth(double[] a, double[] b, double alpha)
+    {
+        if (a.length < 2 || b.length < 2)
+            return Double.POSITIVE_INFINITY;
+
+        double va = variance(a) / a.length;
+        double vb = variance(b) / b.length;
+        double df = (va + vb) * (va + vb) / (va * va / (a.length - 1) + vb * vb / (b.length - 1));
+
+        return tCritical(df, alpha) * Math.sqrt(va + vb);
+    }
+
+    /*
+     * Quantile of the standard normal distribution for 0 < p < 1 (Acklam's rational approximation, relative error
+     * below 1.2e-9, which is plenty for critical values)
+     */
+    public static double normalQuantile(double p)
+    {
+        final double[] a = { -3.969683028665376e+01, 2.209460984245205e+02, -2.759285104469687e+02, 1.383577518672690e+02, -3.066479806614716e+01, 2.506628277459239e+00 };
+        final double[] b = { -5.447609879822406e+01, 1.615858368580409e+02, -1.556989798598866e+02, 6.680131188771972e+01, -1.328068155288572e+01 };
+        final double[] c = { -7.784894002430293e-03, -3.223964580411365e-01, -2.400758277161838e+00, -2.549732539343734e+00, 4.374664141464968e+00, 2.938163982698783e+00 };
+        final double[] d = { 7.784695709041462e-03, 3.224671290700398e-01, 2.445134137142996e+00, 3.754408661907416e+00 };
+
+        if (p <= 0 || p >= 1)
+            throw new IllegalArgumentException("p must be in (0, 1): " + p);
+
+        if (p < 0.02425 || p > 1 - 0.02425)
+        {
+            double q = Math.sqrt(-2 * Math.log(Math.min(p, 1 - p)));
+            double x = (((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4]) * q + c[5]) / ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1);
+
+            return p < 0.5 ? x : -x;
+        }
+
+        double q = p - 0.5, r = q * q;
+
+        return (((((a[0] * r + a[1]) * r + a[2]) * r + a[3]) * r + a[4]) * r + a[5]) * q / (((((b[0] * r + b[1]) * r + b[2]) * r + b[3]) * r + b[4]) * r + 1);
+    }
+
+    private static double variance(double[] values)
+    {
+        double sd = standardDeviation(values);
+        return sd * sd;
+    }
+}
@@ -0,0 +1,40 @@
+package game;
+
+import game.controllers.EnemyController;
+import game.controllers.SharedStateController;
+import game.models.Game;
+
+/*
+ * Wraps an enemy controller to record the time taken by each call to update(-) (see LatencyHistogram). A call misses
+ * its deadline if it returns after the time due. The wrapped controller is given the shared snapshot or a copy of it
+ * (see SharedStateController); copying is not counted in its latency.
+ */
+public class TimedEnemyController implements EnemyController, SharedStateController
+{
+	private final EnemyController controller;
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	public TimedEnemyController(EnemyController controller)
+	{
+		this.controller = controller;
+	}
+
+	public EnemyController getController() { return controller; }
+	public LatencyHistogram getLatency() { return latency; }
+
+	public void init() { controller.init(); }
+	public void shutdown() { controller.shutdown(); }
+	public int[] getActions() { return controller.getActions(); }
+
+	public void update(Game game, long timeDue)
+	{
+		game = SharedStateController.stateFor(controller, game);
+		long start = System.nanoTime();
+		long deadline = start + (timeDue - System.currentTimeMillis()) * 1000000;
+
+		controller.update(game, timeDue);
+
+		long end = System.nanoTime();
+		latency.record(end - start, end > deadline, game.getTotalTime());
+	}
+}
@@ -0,0 +1,40 @@
+package game;
+
+import game.controllers.HeroController;
+import game.controllers.SharedStateController;
+import game.models.Game;
+
+/*
+ * Wraps a hero controller to record the time taken by each call to update(-) (see LatencyHistogram). A call misses
+ * its deadline if it returns after the time due. The wrapped controller is given the shared snapshot or a copy of it
+ * (see SharedStateController); copying is not counted in its latency.
+ */
+public class TimedHeroController implements HeroController, SharedStateController
+{
+	private final HeroController controller;
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	public TimedHeroController(HeroController controller)
+	{
+		this.controller = controller;
+	}
+
+	public HeroController getController() { return controller; }
+	public LatencyHistogram getLatency() { return latency; }
+
+	public void init() { controller.init(); }
+	public void shutdown() { controller.shutdown(); }
+	public int getAction() { return controller.getAction(); }
+
+	public void update(Game game, long timeDue)
+	{
+		game = SharedStateController.stateFor(controller, game);
+		long start = System.nanoTime();
+		long deadline = start + (timeDue - System.currentTimeMillis()) * 1000000;
+
+		controller.update(game, timeDue);
+
+		long end = System.nanoTime();
+		latency.record(end - start, end > deadline, game.getTotalTime());
+	}
+}
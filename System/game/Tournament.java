@@ -0,0 +1,359 @@
+package game;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.Modifier;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import game.controllers.EnemyController;
+import game.controllers.HeroController;
+
+/*
+ * Round-robin tournament: every hero plays every enemy for the same number of games. All pairings are played at the
+ * same time on one pool of worker threads, and game i of every pairing is played on the same seed (see Experiment),
+ * so the heroes face the same random events against each enemy and vice versa.
+ *
+ * Besides the matrix of mean scores, the heroes and the enemies are rated (separately) with the Bradley-Terry model:
+ * two heroes are compared on every game they played on the same seed against the same enemy (the higher score wins),
+ * two enemies on every game they played on the same seed against the same hero (the lower score wins). The ratings
+ * are on the Elo scale (a difference of 400 means odds of 10:1), with an average of 1500.
+ */
+public class Tournament
+{
+	private final List<String> heroNames = new ArrayList<String>();
+	private final List<Supplier<HeroController>> heroes = new ArrayList<Supplier<HeroController>>();
+	private final List<String> enemyNames = new ArrayList<String>();
+	private final List<Supplier<EnemyController>> enemies = new ArrayList<Supplier<EnemyController>>();
+
+	private ExperimentReport[][] reports;
+
+	public void addHero(String name, Supplier<HeroController> hero)
+	{
+		heroNames.add(name);
+		heroes.add(hero);
+	}
+
+	public void addEnemy(String name, Supplier<EnemyController> enemy)
+	{
+		enemyNames.add(name);
+		enemies.add(enemy);
+	}
+
+	/*
+	 * Adds all the controllers found in the given packages (on the class path): every public, concrete class that
+	 * implements HeroController or EnemyController and has a public constructor without arguments. Controllers are
+	 * added in alphabetical order.
+	 */
+	public void discover(String... packageNames)
+	{
+		for (String packageName : packageNames)
+			for (Class<?> type : findClasses(packageName))
+			{
+				if (!Modifier.isPublic(type.getModifiers()) || Modifier.isAbstract(type.getModifiers()) || type.isInterface())
+					continue;
+
+				try
+				{
+					type.getConstructor();
+				}
+				catch (NoSuchMethodException e)
+				{
+					continue;
+				}
+
+				if (HeroController.class.isAssignableFrom(type))
+					addHero(type.getSimpleName(), factory(type.asSubclass(HeroController.class)));
+				else if (EnemyController.class.isAssignableFrom(type))
+					addEnemy(type.getSimpleName(), factory(type.asSubclass(EnemyController.class)));
+			}
+	}
+
+	public List<String> getHeroNames() { return heroNames; }
+	public List<String> getEnemyNames() { return enemyNames; }
+
+	//Report of the games between a hero and an enemy (after play(-))
+	public ExperimentReport getReport(int hero, int enemy) { return reports[hero][enemy]; }
+
+	//Plays the given number of games for every pairing, using the given number of threads
+	public void play(int trials, long seed, int threads)
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(threads, runnable ->
+		{
+			Thread thread = new Thread(runnable, "tournament-worker");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		List<Experiment> experiments = new ArrayList<Experiment>();
+
+		for (int hero = 0; hero < heroes.size(); hero++)
+			for (int enemy = 0; enemy < enemies.size(); enemy++)
+				experiments.add(new Experiment(heroes.get(hero), enemies.get(enemy), seed, executor));
+
+		try
+		{
+			Experiment.play(experiments, trials);
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+
+		reports = new ExperimentReport[heroes.size()][enemies.size()];
+
+		for (int hero = 0; hero < heroes.size(); hero++)
+			for (int enemy = 0; enemy < enemies.size(); enemy++)
+				reports[hero][enemy] = experiments.get(hero * enemies.size() + enemy).getReport();
+	}
+
+	//Ratings of the heroes (Elo scale), in the order in which they were added
+	public double[] getHeroRatings()
+	{
+		double[][] wins = new double[heroes.size()][heroes.size()];
+
+		for (int enemy = 0; enemy < enemies.size(); enemy++)
+			for (int a = 0; a < heroes.size(); a++)
+				for (int b = 0; b < heroes.size(); b++)
+					if (a != b)
+						addWins(wins, a, b, reports[a][enemy].getScores(), reports[b][enemy].getScores(), true);
+
+		return rate(wins);
+	}
+
+	//Ratings of the enemies (Elo scale), in the order in which they were added
+	public double[] getEnemyRatings()
+	{
+		double[][] wins = new double[enemies.size()][enemies.size()];
+
+		for (int hero = 0; hero < heroes.size(); hero++)
+			for (int a = 0; a < enemies.size(); a++)
+				for (int b = 0; b < enemies.size(); b++)
+					if (a != b)
+						addWins(wins, a, b, reports[hero][a].getScores(), reports[hero][b].getScores(), false);
+
+		return rate(wins);
+	}
+
+	//Writes one line per pairing: hero, enemy, number of games and the mean, standard deviation and 95% CI of the score
+	public void writeCsv(String fileName)
+	{
+		try (PrintWriter writer = new PrintWriter(fileName))
+		{
+			writer.println("hero,enemy,trials,mean,sd,ci_low,ci_high,median,mean_level,mean_lives_lost");
+
+			for (int hero = 0; hero < heroes.size(); hero++)
+				for (int enemy = 0; enemy < enemies.size(); enemy++)
+				{
+					ExperimentReport report = reports[hero][enemy];
+					double[] scores = report.getScores();
+					double mean = Statistics.mean(scores);
+					double halfWidth = Statistics.halfWidth(scores);
+					double level = 0, livesLost = 0;
+
+					for (TrialResult trial : report.getTrials())
+					{
+						level += trial.level;
+						livesLost += trial.livesLost;
+					}
+
+					writer.println(String.format(Locale.ROOT, "%s,%s,%d,%.2f,%.2f,%.2f,%.2f,%.1f,%.3f,%.3f", heroNames.get(hero), enemyNames.get(enemy),
+							scores.length, mean, Statistics.standardDeviation(scores), mean - halfWidth, mean + halfWidth, Statistics.percentile(scores, 50),
+							level / scores.length, livesLost / scores.length));
+				}
+		}
+		catch (IOException ioe)
+		{
+			System.out.println("Could not save tournament results!");
+		}
+	}
+
+	//Matrix of mean scores followed by the ratings
+	public String toString()
+	{
+		StringBuilder summary = new StringBuilder();
+		double[] heroRatings = getHeroRatings();
+		double[] enemyRatings = getEnemyRatings();
+
+		summary.append(String.format("%-22s", "mean score"));
+		for (String enemy : enemyNames)
+			summary.append(String.format("%22s", enemy));
+		summary.append(String.format("%10s%n", "rating"));
+
+		for (int hero = 0; hero < heroes.size(); hero++)
+		{
+			summary.append(String.format("%-22s", heroNames.get(hero)));
+			for (int enemy = 0; enemy < enemies.size(); enemy++)
+				summary.append(String.format("%22s", String.format("%.0f +/- %.0f", reports[hero][enemy].getMeanScore(), reports[hero][enemy].getScoreHalfWidth())));
+			summary.append(String.format("%10.0f%n", heroRatings[hero]));
+		}
+
+		summary.append(String.format("%-22s", "rating"));
+		for (double rating : enemyRatings)
+			summary.append(String.format("%22.0f", rating));
+
+		return summary.append(String.format("%n")).toString();
+	}
+
+	//Counts the games (on the same seed) won by a over b: a higher score if the players are heroes, a lower one otherwise
+	private static void addWins(double[][] wins, int a, int b, double[] scoresA, double[] scoresB, boolean higherWins)
+	{
+		for (int i = 0; i < Math.min(scoresA.length, scoresB.length); i++)
+			if (scoresA[i] == scoresB[i])
+				wins[a][b] += 0.5;
+			else if ((scoresA[i] > scoresB[i]) == higherWins)
+				wins[a][b]++;
+	}
+
+	/*
+	 * Fits the Bradley-Terry model to the matrix of wins with the MM algorithm (Hunter, 2004). Every pair gets one
+	 * virtual draw so that players without wins still get a finite rating.
+	 */
+	private static double[] rate(double[][] wins)
+	{
+		int players = wins.length;
+		double[] strength = new double[players];
+		double[] ratings = new double[players];
+
+		Arrays.fill(strength, 1);
+
+		for (int iteration = 0; iteration < 10000; iteration++)
+		{
+			double[] next = new double[players];
+			double logSum = 0, change = 0;
+
+			for (int i = 0; i < players; i++)
+			{
+				double won = 0, denominator = 0;
+
+				for (int j = 0; j < players; j++)
+					if (i != j)
+					{
+						won += wins[i][j] + 0.5;
+						denominator += (wins[i][j] + wins[j][i] + 1) / (strength[i] + strength[j]);
+					}
+
+				next[i] = denominator == 0 ? 1 : won / denominator;
+				logSum += Math.log(next[i]);
+			}
+
+			double scale = Math.exp(logSum / players);
+
+			for (int i = 0; i < players; i++)
+			{
+				next[i] /= scale;
+				change = Math.max(change, Math.abs(next[i] - strength[i]));
+			}
+
+			strength = next;
+
+			if (change < 1e-9)
+				break;
+		}
+
+		for (int i = 0; i < players; i++)
+			ratings[i] = 1500 + 400 * Math.log10(strength[i]);
+
+		return ratings;
+	}
+
+	private static <T> Supplier<T> factory(final Class<? extends T> type)
+	{
+		return () ->
+		{
+			try
+			{
+				return type.getConstructor().newInstance();
+			}
+			catch (ReflectiveOperationException e)
+			{
+				throw new RuntimeException("Cannot create " + type.getName(), e);
+			}
+		};
+	}
+
+	//Top-level classes of a package, from the directories and jars of the class path
+	private static List<Class<?>> findClasses(String packageName)
+	{
+		String path = packageName.replace('.', '/');
+		ClassLoader loader = Tournament.class.getClassLoader();
+		List<String> names = new ArrayList<String>();
+		List<Class<?>> classes = new ArrayList<Class<?>>();
+
+		try
+		{
+			Enumeration<URL> urls = loader.getResources(path);
+
+			while (urls.hasMoreElements())
+			{
+				URL url = urls.nextElement();
+
+				if (url.getProtocol().equals("file"))
+				{
+					File[] files = new File(url.toURI()).listFiles();
+
+					if (files != null)
+						for (File file : files)
+							addClassName(names, packageName, file.getName());
+				}
+				else if (url.getProtocol().equals("jar"))
+				{
+					JarFile jar = ((JarURLConnection) url.openConnection()).getJarFile();
+					Enumeration<JarEntry> entries = jar.entries();
+
+					while (entries.hasMoreElements())
+					{
+						String entry = entries.nextElement().getName();
+
+						if (entry.startsWith(path + "/") && entry.indexOf('/', path.length() + 1) < 0)
+							addClassName(names, packageName, entry.substring(path.length() + 1));
+					}
+				}
+			}
+		}
+		catch (IOException | URISyntaxException e)
+		{
+			e.printStackTrace();
+		}
+
+		Collections.sort(names);
+
+		for (String name : names)
+		{
+			try
+			{
+				classes.add(Class.forName(name, false, loader));
+			}
+			catch (ClassNotFoundException | LinkageError e)
+			{
+				System.out.println("Could not load " + name);
+			}
+		}
+
+		return classes;
+	}
+
+	private static void addClassName(List<String> names, String packageName, String fileName)
+	{
+		if (fileName.endsWith(".class") && fileName.indexOf('$') < 0)
+		{
+			String name = packageName + "." + fileName.substring(0, fileName.length() - ".class".length());
+
+			if (!names.contains(name))
+				names.add(name);
+		}
+	}
+}
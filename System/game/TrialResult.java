@@ -0,0 +1,36 @@
+package game;
+
+import game.models.Game;
+
+/*
+ * Outcome of one game of an experiment.
+ */
+public final class TrialResult
+{
+    public final long seed;
+    public final int score;
+    public final int level;             // level reached (0-based)
+    public final int totalTime;         // number of ticks played
+    public final int livesLost;
+    public final int[] deathsPerMaze;   // lives lost in each maze (indexed by maze number)
+
+    public TrialResult(long seed, int score, int level, int totalTime, int[] deathsPerMaze)
+    {
+        this.seed = seed;
+        this.score = score;
+        this.level = level;
+        this.totalTime = totalTime;
+        this.deathsPerMaze = deathsPerMaze;
+
+        int livesLost = 0;
+        for (int deaths : deathsPerMaze)
+            livesLost += deaths;
+
+        this.livesLost = livesLost;
+    }
+
+    public TrialResult(long seed, int score, int level, int totalTime)
+    {
+        this(seed, score, level, totalTime, new int[Game.NUM_MAZES]);
+    }
+}
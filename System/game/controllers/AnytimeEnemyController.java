@@ -0,0 +1,10 @@
+package game.controllers;
+
+/*
+ * Enemy controller that always has an answer: getActions() returns the best actions found so far and may be read at
+ * any time, including while update(-) is still running, so improved actions should be published as a new array rather
+ * than by modifying the one last returned. See AnytimeHeroController.
+ */
+public interface AnytimeEnemyController extends EnemyController
+{
+}
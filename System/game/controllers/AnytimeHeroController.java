@@ -0,0 +1,15 @@
+package game.controllers;
+
+/*
+ * Hero controller that always has an answer. The action returned by getAction() is the best one found so far and may
+ * be read at any time, including by another thread while update(-) is still running: the controller should publish a
+ * provisional action early (e.g., after the first iteration of an iterative deepening search) and replace it as it
+ * finds better ones (through a volatile field, for instance).
+ * 
+ * In timed mode the action current at the deadline is taken and the thread running update(-) is interrupted, so the
+ * search can use the whole time available; update(-) should check Thread.currentThread().isInterrupted() (as well as
+ * timeDue) regularly and return promptly once it is set.
+ */
+public interface AnytimeHeroController extends HeroController
+{
+}
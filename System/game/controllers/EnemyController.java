@@ -7,6 +7,12 @@ import game.models.Game;
  * required is getActions(-), which returns the direction to be taken: 
  * Up - Right - Down - Left -> 0 - 1 - 2 - 3
  * Any other number is considered to be a lack of action (Neutral). 
+ *
+ * The game passed to update(-) is a copy the controller may change, unless the controller implements
+ * SharedStateController: it is then given a read-only snapshot shared with the other controller.
+ *
+ * A controller may play many games (e.g., the trials of an Experiment run by the same thread): init() is called
+ * before each of them and must reset everything the controller remembers from earlier games.
  */
 public interface EnemyController
 {
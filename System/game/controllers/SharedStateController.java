@@ -0,0 +1,18 @@
+package game.controllers;
+
+import game.models.Game;
+
+/*
+ * Marks a controller that only reads the game passed to update(-) (or copy()s it before changing it). Such controllers
+ * are given the read-only snapshot of the tick that both controllers share (see Game.snapshot()), on which any attempt
+ * to change the state throws an exception. Controllers that do not implement it are given a mutable copy of their own
+ * every tick, as before snapshots existed, so they may still advance or otherwise change the game they are passed.
+ */
+public interface SharedStateController
+{
+	//The game to pass to a controller's update(-): the shared snapshot if the controller opted in, a copy of it otherwise
+	static Game stateFor(Object controller, Game snapshot)
+	{
+		return controller instanceof SharedStateController ? snapshot : snapshot.copy();
+	}
+}
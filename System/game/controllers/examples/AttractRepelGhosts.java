@@ -2,9 +2,10 @@ package game.controllers.examples;
 
 import java.util.List;
 import game.controllers.EnemyController;
+import game.controllers.SharedStateController;
 import game.models.*;
 
-public final class AttractRepelGhosts implements EnemyController
+public final class AttractRepelGhosts implements EnemyController, SharedStateController
 {	
 	private final static float CONSISTENCY=0.9f;	//move towards/away with this probability
 	private boolean attract;
@@ -22,7 +23,7 @@ public final class AttractRepelGhosts implements EnemyController
 	{		
 		actions = new int[Game.NUM_ENEMY];
 
-		Enemy[] enemies = (Enemy[]) game.getEnemies().toArray();
+		Enemy[] enemies = game.getEnemies().toArray(new Enemy[Game.NUM_ENEMY]);
 		for(int i=0;i<actions.length;i++)	//for each ghost
 		{
 			Enemy enemy = enemies[i];
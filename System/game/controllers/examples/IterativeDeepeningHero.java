@@ -0,0 +1,135 @@
+package game.controllers.examples;
+
+import java.util.Arrays;
+
+import game.controllers.AnytimeHeroController;
+import game.controllers.SharedStateController;
+import game.models.Game;
+import game.models.Node;
+
+/*
+ * Anytime hero: searches the moves of the hero with iterative deepening (using makeMove/unmakeMove on its own copy of
+ * the state it is given, which is read-only; the enemies keep going as they are), and publishes the best direction
+ * after every completed depth. Losing a life is heavily penalised, otherwise the score and the distance to the nearest
+ * pill at the end of the line count. The search stops at the time due, when interrupted or once it has made a given
+ * number of moves per tick, whichever comes first. The default budget keeps untimed runs (experiments, tournaments), in
+ * which nothing interrupts the search and the time due is only nominal, at a few milliseconds per tick; in timed games
+ * (see GameClock) a budget of 0 lets it use the whole tick.
+ */
+public final class IterativeDeepeningHero implements AnytimeHeroController, SharedStateController
+{
+	private static final int MAX_DEPTH = 60;
+	private static final int DEATH_PENALTY = 100000;
+	public static final int DEFAULT_NODE_BUDGET = 5000;
+
+	private volatile int action = -1;
+	private final int[] enemyDirs = new int[Game.NUM_ENEMY];
+	private Game game;				//working copy of the state, reused from tick to tick
+	private final int nodeBudget;	//moves searched per tick (0: no limit)
+	private int nodes;
+	private long deadline;
+	private boolean stopped;
+
+	public IterativeDeepeningHero()
+	{
+		this(DEFAULT_NODE_BUDGET);
+	}
+
+	public IterativeDeepeningHero(int nodeBudget)
+	{
+		this.nodeBudget = nodeBudget;
+	}
+
+	public int getAction() { return action; }
+	public void init() { action = -1; }
+	public void shutdown() { }
+
+	public void update(Game state, long timeDue)
+	{
+		if (game == null)
+			game = state.copy();
+		else
+			state.copyInto(game);
+
+		deadline = timeDue - 2;		//leave some time for the game to take the action
+		stopped = false;
+		nodes = 0;
+
+		int from = game.heroNode();
+
+		for (int depth = 1; depth <= MAX_DEPTH; depth++)
+		{
+			int bestDir = -1;
+			int bestValue = Integer.MIN_VALUE;
+
+			for (int dir = 0; dir < 4; dir++)
+			{
+				if (game.neighbor(from, dir) == -1)
+					continue;
+
+				int value = search(dir, depth - 1);
+
+				if (stopped)
+					return;		//keep the result of the last completed depth
+
+				if (value > bestValue)
+				{
+					bestValue = value;
+					bestDir = dir;
+				}
+			}
+
+			action = bestDir;
+		}
+	}
+
+	private int search(int dir, int depth)
+	{
+		if ((nodeBudget > 0 && ++nodes > nodeBudget) || System.currentTimeMillis() > deadline || Thread.currentThread().isInterrupted())
+		{
+			stopped = true;
+			return 0;
+		}
+
+		int lives = game.getLivesRemaining();
+		int level = game.getCurLevel();
+
+		Arrays.fill(enemyDirs, -1);
+		game.makeMove(dir, enemyDirs);
+
+		int value;
+
+		if (game.getLivesRemaining() < lives || game.gameOver())
+			value = -DEATH_PENALTY - depth;		//die as late as possible
+		else if (depth == 0 || game.getCurLevel() != level)
+			value = evaluate();
+		else
+		{
+			value = Integer.MIN_VALUE;
+			int from = game.heroNode();
+			int reverse = Node.getReverse(game.heroDirection());
+
+			for (int next = 0; next < 4 && !stopped; next++)
+				if (next != reverse && game.neighbor(from, next) != -1)
+					value = Math.max(value, search(next, depth - 1));
+
+			if (value == Integer.MIN_VALUE)		//dead end: turn back
+				value = search(reverse, depth - 1);
+		}
+
+		game.unmakeMove();
+		return value;
+	}
+
+	private int evaluate()
+	{
+		int from = game.heroNode();
+		int nearest = game.numberOfNodes();
+
+		for (int i = 0; i < game.getCurMaze().getNumberPills(); i++)
+			if (game.isPillAvailable(game.pillNode(i)))
+				nearest = Math.min(nearest, game.distance(from, game.pillNode(i)));
+
+		return 10 * game.getScore() - nearest;
+	}
+}
@@ -1,12 +1,13 @@
 package game.controllers.examples;
 
 import game.controllers.EnemyController;
+import game.controllers.SharedStateController;
 import game.models.Game.DM;
 import game.models.Game;
 import game.system._Game;
 import game.models.Enemy;
 
-public class Legacy implements EnemyController
+public class Legacy implements EnemyController, SharedStateController
 {
 	private int[] actions;
 	public int[] getActions() { return actions; }
@@ -17,7 +18,7 @@ public class Legacy implements EnemyController
 		actions=new int[Game.NUM_ENEMY];
 		DM[] dms=Game.DM.values();
 
-		Enemy[] enemies = (Enemy[]) game.getEnemies().toArray();
+		Enemy[] enemies = game.getEnemies().toArray(new Enemy[Game.NUM_ENEMY]);
 
 		for(int i=0;i<actions.length-1;i++)
 		{
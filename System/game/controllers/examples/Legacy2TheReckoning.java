@@ -2,11 +2,12 @@ package game.controllers.examples;
 
 import java.util.List;
 import game.controllers.EnemyController;
+import game.controllers.SharedStateController;
 import game.models.Game;
 import game.models.Node;
 import game.models.Enemy;
 
-public class Legacy2TheReckoning implements EnemyController
+public class Legacy2TheReckoning implements EnemyController, SharedStateController
 {
 	public static final int CROWDED_DISTANCE=30;
 	public static final int PACMAN_DISTANCE=10;
@@ -3,12 +3,13 @@ package game.controllers.examples;
 import java.util.ArrayList;
 
 import game.controllers.HeroController;
+import game.controllers.SharedStateController;
 import game.models.Game;
 import game.models.Node;
 import game.models.Hero;
 import java.util.List;
 
-public class NearestPillHero implements HeroController
+public class NearestPillHero implements HeroController, SharedStateController
 {
 	private int action;
 	public int getAction() { return action; }
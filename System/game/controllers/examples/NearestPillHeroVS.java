@@ -4,6 +4,7 @@ import java.awt.Color;
 import java.util.ArrayList;
 import java.util.List;
 import game.controllers.HeroController;
+import game.controllers.SharedStateController;
 import game.models.Game;
 import game.view.GameView;
 import game.models.Node;
@@ -16,7 +17,7 @@ import game.models.Hero;
  * not make sense from a controller's point of view (i.e., they might not be useful)
  * Comment/un-comment code below as desired (drawing all visuals would probably be too much).
  */
-public final class NearestPillHeroVS implements HeroController
+public final class NearestPillHeroVS implements HeroController, SharedStateController
 {
 	private int action;
 	public int getAction() { return action; }
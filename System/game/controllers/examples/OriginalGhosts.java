@@ -2,6 +2,7 @@ package game.controllers.examples;
 
 import java.util.List;
 import game.controllers.EnemyController;
+import game.controllers.SharedStateController;
 import game.models.Game;
 import game.models.Node;
 
@@ -10,7 +11,7 @@ import game.models.Node;
  * limitations of the system.
  * @author John Wileczek
  */
-public class OriginalGhosts implements EnemyController
+public class OriginalGhosts implements EnemyController, SharedStateController
 {
 	//Need to keep track of a previous and current game states for
 	//timer and such
@@ -385,7 +386,7 @@ public class OriginalGhosts implements EnemyController
 	//Place your game logic here to play the game as the ghosts
 	private int[] actions;
 	public int[] getActions() { return actions; }
-	public void init() { }
+	public void init() { ResetControllerData(); }
 	public void shutdown() { }
 	public void update(Game game,long timeDue)
 	{
@@ -1,11 +1,12 @@
 package game.controllers.examples;
 
 import game.controllers.EnemyController;
+import game.controllers.SharedStateController;
 import game.models.Game;
 import game.models.Enemy;
 import java.util.List;
 
-public final class RandomGhosts implements EnemyController
+public final class RandomGhosts implements EnemyController, SharedStateController
 {
 	private int[] actions;
 	public int[] getActions() { return actions; }
@@ -14,7 +15,7 @@ public final class RandomGhosts implements EnemyController
 	public void update(Game game,long timeDue)
 	{
 		actions = new int[Game.NUM_ENEMY];
-		Enemy[] enemies = (Enemy[]) game.getEnemies().toArray();
+		Enemy[] enemies = game.getEnemies().toArray(new Enemy[Game.NUM_ENEMY]);
 		
 		//Chooses a random LEGAL action if required. Could be much simpler by simply returning
 		//any random number of all of the ghosts
@@ -2,9 +2,10 @@ package game.controllers.examples;
 
 import java.util.List;
 import game.controllers.HeroController;
+import game.controllers.SharedStateController;
 import game.models.Game;
 
-public final class RandomHero implements HeroController
+public final class RandomHero implements HeroController, SharedStateController
 {
 	private int action;
 	public int getAction() { return action; }
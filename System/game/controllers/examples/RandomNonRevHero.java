@@ -1,12 +1,13 @@
 package game.controllers.examples;
 
 import game.controllers.HeroController;
+import game.controllers.SharedStateController;
 import game.system._Game;
 import game.models.Game;
 
 import java.util.List;
 
-public final class RandomNonRevHero implements HeroController
+public final class RandomNonRevHero implements HeroController, SharedStateController
 {
 	private int action;
 	public int getAction() { return action; }
@@ -0,0 +1,26 @@
+package game.models;
+import java.util.List;
+
+/*
+ * A corridor is a path of the maze between two nodes that are not simply part of a corridor (junctions, or dead
+ * ends if a maze has any): all the nodes in between have exactly two neighbours. The corridors partition the edges of
+ * the maze, so the mazes can also be seen as a much smaller graph whose nodes are the junctions and whose edges are
+ * the corridors (see Maze.getCorridors()). Both ends may be the same node (a loop).
+ */
+public interface Corridor
+{
+    public int getIndex();                      // Returns the index of the corridor in Maze.getCorridors()
+
+    public Node getStart();                     // Returns the junction at the start of the corridor
+    public Node getEnd();                       // Returns the junction at the end of the corridor
+    public Node getOtherEnd(Node end);          // Returns the junction at the other end (null if the node is neither end)
+    public int getStartDirection();             // Returns the direction in which the corridor leaves its start
+    public int getEndDirection();               // Returns the direction in which the corridor leaves its end (towards the start)
+
+    public int getLength();                     // Number of steps from one end to the other
+    public List<Node> getNodes();               // Returns the nodes from the start to the end (both included)
+    public int getPosition(Node node);          // Returns the number of steps from the start to a node strictly inside the corridor (-1 for other nodes)
+
+    public int[] getPillIndices();              // Returns the numbers of the pills strictly inside the corridor, from the start to the end (see IntGame.pillNode(-))
+    public int[] getPowerPillIndices();         // Returns the numbers of the power pills strictly inside the corridor
+}
@@ -12,15 +12,15 @@
  * clearly documented. We welcome any comments and suggestions regarding the code.
  */
 package game.models;
-import java.util.Random;
 import java.util.List;
 
 /*
  * This interface defines the contract between the game engine and the controllers. It provides all
  * the methods a controller may use to (a) query the game state, (b) compute game-related attributes
- * and (c) test moves by using a forward model (i.e., copy() followed by advanceGame()).
+ * and (c) test moves by using a forward model (i.e., copy() followed by advanceGame()). The allocation-free,
+ * index-based queries are inherited from IntGame.
  */
-public interface Game
+public interface Game extends IntGame
 {
 	public int getScore();											// Returns the score of the game
 	public int getCurLevel();										// Returns the current level
@@ -39,15 +39,29 @@ public interface Game
 	public List<Enemy> getEnemies();								// Returns a copy of the enemy array
 
 	public Game copy();												// Returns an exact copy of the game (forward model)
+	public Game snapshot();											// Returns a read-only copy that can be shared between threads (copy() it to change it)
+	public boolean isReadOnly();									// Checks if the game is a read-only snapshot (advancing it throws an exception)
+	public void copyInto(Game target);								// Overwrites a game obtained from copy() with this state, without allocating (e.g., to reuse a pool of games)
+	public GameSnapshot saveSnapshot(GameSnapshot snapshot);		// Stores the state in the snapshot (a new one if null) and returns it
+	public void loadSnapshot(GameSnapshot snapshot);				// Restores a state stored by saveSnapshot(-)
+	public long stateHash();										// Returns a 64-bit hash of the state (actors, remaining pills, level, lives), e.g., for transposition tables
 	public Maze getCurMaze();										// Returns the current maze information
-	public static Random rng = new Random(0);					// Random number generator with fixed seed
+	public static GameRandom rng = GameRandom.perThread(0);		// Random number generator for the controllers with fixed seed (one stream per thread; the engine uses its own)
 
 	public int[] advanceGame(int heroDir, int[] enemyDirs);			// Advances the game using the actions (directions) supplied; returns all directions played [Hero, Enemy1, Enemy2, Enemy3, Enemy4]
+	public void makeMove(int heroDir, int[] enemyDirs);				// Advances the game like advanceGame(-), but remembers the state so the move can be undone (no allocation)
+	public void unmakeMove();										// Restores the exact state from before the most recent makeMove(-)
+	public int[] advanceUntilDecision(int heroDir, int[] enemyDirs);	// Advances with the directions supplied, then through corridors until an actor must decide or an event occurs; returns [ticks, events (see Event)]
+	public int[] advanceUntilDecision(int heroDir, int[] enemyDirs, boolean enemiesDecide);	// Same, but only the hero's decisions end the macro-step unless enemiesDecide is set
 	public boolean gameOver();										// Returns true if the hero has lost all her lives or if MAX_LEVELS has been reached
 
 	//These constants specify the exact nature of the game
 	public class Direction { public static final int UP = 0, RIGHT = 1, DOWN = 2, LEFT = 3, EMPTY = -1; }	//directions
 
+	//events reported by advanceUntilDecision(-) (bit flags); all but PILL end the macro-step
+	public class Event { public static final int PILL = 1, POWER_PILL = 2, ENEMY_EATEN = 4, HERO_EATEN = 8, LAIR_EXIT = 16, LEVEL_CHANGED = 32,
+		GAME_OVER = 64, HERO_DECISION = 128, ENEMY_DECISION = 256; }
+
 	// Points
 	public static final int PILL_SCORE = 10;
 	public static final int POWER_PILL_SCORE = 50;
@@ -0,0 +1,118 @@
+package game.models;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Random number generator of the game. It produces exactly the same numbers as java.util.Random for the same seed,
+ * but its position in the sequence can be read and restored (getState()/setState(-)), which the forward model needs
+ * to undo moves exactly. Only the 48-bit seed is captured, so nextGaussian() should not be used by the engine.
+ *
+ * Every game owns one generator (copies of the game get copies of it); split() derives independent generators, e.g.,
+ * one seed per game of an experiment. Game.rng, used by the controllers, is a perThread(-) generator: each thread
+ * draws from its own stream, so games running in parallel neither contend for nor interleave on a shared generator.
+ */
+@SuppressWarnings("serial")
+public class GameRandom extends Random
+{
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    private long state;
+
+    public GameRandom(long seed)
+    {
+        super(seed);
+        setSeed(seed);
+    }
+
+    public synchronized void setSeed(long seed)
+    {
+        super.setSeed(seed);
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    protected int next(int bits)
+    {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+
+    //Returns a generator at the same position of the same sequence
+    public GameRandom copy()
+    {
+        GameRandom copy = new GameRandom(0);
+        copy.setState(getState());
+        return copy;
+    }
+
+    //Returns a new generator whose sequence is independent of this one (its seed is drawn from this one and scrambled)
+    public GameRandom split()
+    {
+        return new GameRandom(mix(nextLong()));
+    }
+
+    //Returns a generator that keeps a separate stream for every thread. The first thread to use it starts from the seed,
+    //later threads from scrambled variations of it; setSeed(-) reseeds the stream of the calling thread only.
+    public static GameRandom perThread(long seed)
+    {
+        return new PerThread(seed);
+    }
+
+    //SplitMix64 finalizer
+    static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public long getState()
+    {
+        return state;
+    }
+
+    public void setState(long state)
+    {
+        this.state = state & MASK;
+    }
+
+    private static final class PerThread extends GameRandom
+    {
+        private ThreadLocal<GameRandom> streams;
+
+        PerThread(final long seed)
+        {
+            super(seed);
+            final AtomicInteger threads = new AtomicInteger();
+            streams = ThreadLocal.withInitial(() ->
+            {
+                int thread = threads.getAndIncrement();
+                return new GameRandom(thread == 0 ? seed : mix(seed + thread * 0x9E3779B97F4A7C15L));
+            });
+        }
+
+        public void setSeed(long seed)
+        {
+            //called by the constructor of Random before the streams exist
+            if (streams != null)
+                streams.get().setSeed(seed);
+        }
+
+        protected int next(int bits)
+        {
+            return streams.get().next(bits);
+        }
+
+        public long getState()
+        {
+            return streams.get().getState();
+        }
+
+        public void setState(long state)
+        {
+            streams.get().setState(state);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package game.models;
+
+/*
+ * Compact, fixed-layout copy of a game state: all scalars and actor fields in one int[] block and the random number
+ * generator, state hash and pill words in one long[] block (see Game.saveSnapshot(-)). A snapshot takes a few hundred
+ * bytes instead of a full object graph, and saving into or loading from an existing snapshot does not allocate.
+ */
+public final class GameSnapshot
+{
+    public final int[] ints;
+    public final long[] longs;
+
+    public GameSnapshot(int intSize, int longSize)
+    {
+        ints = new int[intSize];
+        longs = new long[longSize];
+    }
+
+    //Copies another snapshot into this one
+    public void set(GameSnapshot other)
+    {
+        System.arraycopy(other.ints, 0, ints, 0, ints.length);
+        System.arraycopy(other.longs, 0, longs, 0, longs.length);
+    }
+}
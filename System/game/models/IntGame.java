@@ -0,0 +1,31 @@
+package game.models;
+
+/*
+ * Index-based view of the game state. Nodes are identified by their index in the current maze (see Node.getIndex())
+ * and enemies by their number. None of these methods allocate, so search-based controllers can query the state as
+ * often as they like without creating garbage; the object-based methods of Game return copies instead.
+ */
+public interface IntGame
+{
+	public int heroNode();												// Returns the index of the node the hero is at
+	public int heroDirection();											// Returns the direction the hero last moved in
+	public int enemyNode(int whichEnemy);								// Returns the index of the node an enemy is at
+	public int enemyDirection(int whichEnemy);							// Returns the direction an enemy last moved in
+	public int enemyEdibleTime(int whichEnemy);							// Returns the remaining edible time of an enemy (0 if not edible)
+	public int enemyLairTime(int whichEnemy);							// Returns the remaining lair time of an enemy (0 if in the maze)
+
+	public boolean isPillAvailable(int nodeIndex);						// Checks if the node holds a pill that is still available
+	public boolean isPowerPillAvailable(int nodeIndex);					// Checks if the node holds a power pill that is still available
+	public int pillNode(int pillNumber);								// Returns the index of the node of the n-th pill of the maze (0 <= n < Maze.getNumberPills())
+	public int powerPillNode(int powerPillNumber);						// Returns the index of the node of the n-th power pill of the maze
+
+	public int numberOfNodes();											// Returns the number of nodes of the current maze
+	public Node node(int nodeIndex);									// Returns the node with the given index in the current maze
+	public int neighbor(int nodeIndex, int direction);					// Returns the index of the neighbour in a direction (-1 if none; the node itself for neutral)
+	public int distance(int fromNode, int toNode);						// Returns the shortest path distance between two nodes
+	public int nextDir(int fromNode, int toNode, boolean approach);		// Returns the first direction of a shortest path towards (or the best direction away from) a node
+
+	public int pillsOnCorridor(int corridor);							// Returns the number of pills left strictly inside a corridor (see Maze.getCorridors())
+	public long corridorPillMask(int corridor);							// Returns the pills left strictly inside a corridor: bit i is its i-th pill from the start (see Corridor.getPillIndices())
+	public int pillsAlongPath(int fromNode, int toNode);				// Returns the number of pills left on a shortest path (fromNode excluded, toNode included)
+}
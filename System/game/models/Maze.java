@@ -22,4 +22,9 @@ public interface Maze
     public List<Node> getPillNodes();               // Returns the indices to all the nodes that have pills
     public List<Node> getPowerPillNodes();          // Returns all the nodes that have power pills
     public List<Node> getJunctionNodes();           // Returns the indices to all the nodes that are junctions
+
+    public List<Corridor> getCorridors();                   // Returns the corridors between the junctions (see Corridor)
+    public int getNumberOfCorridors();                      // Total number of corridors in the maze
+    public Corridor getCorridor(Node node);                 // Returns the corridor the node is inside of (null for junctions)
+    public Corridor getCorridor(Node node, int direction);  // Returns the corridor taken when leaving the node in the given direction (null if there is no neighbour there)
 }
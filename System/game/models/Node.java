@@ -3,6 +3,7 @@ import java.util.List;
 
 public interface Node
 {
+    public int getIndex();
     public int getX();
     public int getY();
 
@@ -0,0 +1,83 @@
+package game.system;
+
+/*
+ * Helpers for sets of small integers (pill indices) stored as bits in long[] words. Copying such a set is a single
+ * array copy of a few words, and counting the elements is a popcount per word.
+ */
+final class Bits
+{
+    private Bits() { }
+
+    //Number of words needed for a set of 0..size-1
+    static int words(int size)
+    {
+        return (size + 63) >>> 6;
+    }
+
+    //Returns words of the right length for a set of 0..size-1, reusing the given ones if possible (contents undefined)
+    static long[] resize(long[] words, int size)
+    {
+        return words != null && words.length == words(size) ? words : new long[words(size)];
+    }
+
+    //Returns a set holding 0..size-1, reusing the given words if possible
+    static long[] fill(long[] words, int size)
+    {
+        words = resize(words, size);
+
+        for (int index = 0; index < words.length; index++)
+            words[index] = -1L;
+
+        if ((size & 63) != 0)
+            words[words.length - 1] = (1L << size) - 1;
+
+        return words;
+    }
+
+    static boolean get(long[] words, int index)
+    {
+        return (words[index >>> 6] & (1L << index)) != 0;
+    }
+
+    static void set(long[] words, int index)
+    {
+        words[index >>> 6] |= 1L << index;
+    }
+
+    static void clear(long[] words, int index)
+    {
+        words[index >>> 6] &= ~(1L << index);
+    }
+
+    static int count(long[] words)
+    {
+        int count = 0;
+
+        for (long word : words)
+            count += Long.bitCount(word);
+
+        return count;
+    }
+
+    //Returns the first index >= from that is in the set, or -1 if there is none
+    static int next(long[] words, int from)
+    {
+        int wordIndex = from >>> 6;
+
+        if (wordIndex >= words.length)
+            return -1;
+
+        long word = words[wordIndex] & (-1L << from);
+
+        while (true)
+        {
+            if (word != 0)
+                return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+
+            if (++wordIndex == words.length)
+                return -1;
+
+            word = words[wordIndex];
+        }
+    }
+}
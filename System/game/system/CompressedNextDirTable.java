@@ -0,0 +1,185 @@
+package game.system;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import game.models.Node;
+
+/*
+ * Run-length encoded next-direction table. The targets are numbered in depth-first order, so that nodes that lie
+ * close together in the maze also lie close together in the numbering and mostly share the same first move. For
+ * every source node only the positions at which the entry changes are kept; a query is a binary search over the
+ * runs of the source node.
+ *
+ * The entries are derived from breadth-first searches from the neighbours of each source, which are discarded once
+ * its runs are encoded, so building the table takes O(n) memory per thread rather than the O(n^2) distance table.
+ * (The maze itself still keeps its distance table for getDistance(-) and Node.getPathDistance(-), and for the rare
+ * queries that exclude a direction; see _Node.selectDir(-).)
+ */
+final class CompressedNextDirTable implements NextDirTable
+{
+    private final int[] order;      // node index -> position in depth-first order
+    private final int[] offsets;    // index of the first run of each source node (plus one final entry)
+    private final int[] runs;       // (position of the first target of the run << 8) | entry
+
+    CompressedNextDirTable(final Node[] graph)
+    {
+        final int size = graph.length;
+        final int[] byOrder = depthFirstOrder(graph);
+        final int[][] rows = new int[size][];
+
+        order = new int[size];
+        for (int position = 0; position < size; position++)
+            order[byOrder[position]] = position;
+
+        final ThreadLocal<int[][]> buffers = ThreadLocal.withInitial(() -> new int[5][size]);
+
+        IntStream.range(0, size).parallel().forEach(from ->
+        {
+            _Node node = (_Node) graph[from];
+            int[][] depths = buffers.get();
+            int[] queue = depths[4];
+            int[] row = new int[size];
+            int count = 0;
+            int last = -1;
+
+            for (int direction = 0; direction < 4; direction++)
+                if (node.neighbors[direction] != null)
+                    breadthFirst(graph, node.neighbors[direction].getIndex(), depths[direction], queue);
+
+            for (int position = 0; position < size; position++)
+            {
+                int entry = getEntry(node, byOrder[position], depths);
+
+                if (entry != last)
+                {
+                    row[count++] = position << 8 | entry;
+                    last = entry;
+                }
+            }
+
+            rows[from] = Arrays.copyOf(row, count);
+        });
+
+        offsets = new int[size + 1];
+        for (int from = 0; from < size; from++)
+            offsets[from + 1] = offsets[from] + rows[from].length;
+
+        runs = new int[offsets[size]];
+        for (int from = 0; from < size; from++)
+            System.arraycopy(rows[from], 0, runs, offsets[from], rows[from].length);
+    }
+
+    /*
+     * Same entry as _Node.getNextDirEntry(-) (and the same tie-breaking: the first neighbour in direction order wins),
+     * from the distances of the neighbours to the target instead of the maze's distance table
+     */
+    private static int getEntry(_Node node, int target, int[][] depths)
+    {
+        int approach = -1, retreat = -1;
+        int closest = 0, furthest = 0;
+
+        for (int direction = 0; direction < 4; direction++)
+        {
+            if (node.neighbors[direction] == null)
+                continue;
+
+            int distance = depths[direction][target];
+
+            if (approach == -1 || distance < closest)
+            {
+                closest = distance;
+                approach = direction;
+            }
+
+            if (retreat == -1 || distance > furthest)
+            {
+                furthest = distance;
+                retreat = direction;
+            }
+        }
+
+        return (approach & 0xF) | (retreat & 0xF) << 4;
+    }
+
+    //Distances (number of steps) from the source to all nodes; -1 for the nodes it cannot reach
+    private static void breadthFirst(Node[] graph, int source, int[] depth, int[] queue)
+    {
+        int head = 0, tail = 0;
+
+        Arrays.fill(depth, -1);
+        depth[source] = 0;
+        queue[tail++] = source;
+
+        while (head < tail)
+        {
+            _Node node = (_Node) graph[queue[head++]];
+
+            for (_Node neighbor : node.neighbors)
+            {
+                if (neighbor != null && depth[neighbor.getIndex()] == -1)
+                {
+                    depth[neighbor.getIndex()] = depth[node.getIndex()] + 1;
+                    queue[tail++] = neighbor.getIndex();
+                }
+            }
+        }
+    }
+
+    //Numbers the nodes in the order a depth-first traversal first reaches them (unreachable nodes start new traversals)
+    private static int[] depthFirstOrder(Node[] graph)
+    {
+        int[] byOrder = new int[graph.length];
+        boolean[] visited = new boolean[graph.length];
+        int[] stack = new int[graph.length * 4 + 1];
+        int count = 0;
+
+        for (int root = 0; root < graph.length; root++)
+        {
+            int top = 0;
+            stack[top++] = root;
+
+            while (top > 0)
+            {
+                _Node node = (_Node) graph[stack[--top]];
+
+                if (visited[node.getIndex()])
+                    continue;
+
+                visited[node.getIndex()] = true;
+                byOrder[count++] = node.getIndex();
+
+                for (int direction = 3; direction >= 0; direction--)
+                    if (node.neighbors[direction] != null && !visited[node.neighbors[direction].getIndex()])
+                        stack[top++] = node.neighbors[direction].getIndex();
+            }
+        }
+
+        return byOrder;
+    }
+
+    public int get(int from, int to)
+    {
+        int position = order[to];
+        int low = offsets[from];
+        int high = offsets[from + 1] - 1;
+
+        //find the last run that starts at or before the position of the target
+        while (low < high)
+        {
+            int middle = (low + high + 1) >>> 1;
+
+            if ((runs[middle] >>> 8) <= position)
+                low = middle;
+            else
+                high = middle - 1;
+        }
+
+        return runs[low] & 0xFF;
+    }
+
+    public long getMemoryUsage()
+    {
+        return 4L * (order.length + offsets.length + runs.length);
+    }
+}
@@ -0,0 +1,145 @@
+package game.system;
+
+import game.models.Corridor;
+import game.models.Game;
+import game.models.GameRandom;
+
+/*
+ * Check of the corridor pill masks kept by the engine (see _Game.corridorPills): games are played by a greedy hero
+ * against mostly random enemies, and the masks, pillsOnCorridor(-) and pillsAlongPath(-) are compared with counts made
+ * from the pills one by one (the latter by walking the shortest path node by node). The masks are checked after every
+ * tick, after random make/unmake sequences and on games brought up to date with copyInto(-) and loadSnapshot(-),
+ * where only the pills that differ are flipped. Run with: java game.system.CorridorPillTest [games]
+ */
+public class CorridorPillTest
+{
+	private static final int PATHS = 10;		//random paths checked per state
+
+	private static long checks, mismatches;
+
+	public static void main(String[] args)
+	{
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+
+		GameRandom random = new GameRandom(0);
+		_Game_ game = new _Game_();
+		_Game stale = null;
+		int[] enemyDirs = new int[Game.NUM_ENEMY];
+		int levels = 0;
+
+		for (int g = 0; g < games; g++)
+		{
+			game.newGame(g);
+			check(game, random);
+
+			while (!game.gameOver())
+			{
+				for (int i = 0; i < enemyDirs.length; i++)
+					enemyDirs[i] = random.nextInt(3) == 0 ? random.nextInt(4) : -1;
+
+				int heroDir = random.nextInt(10) == 0 ? random.nextInt(4) : nearestPillDir(game);
+
+				switch (random.nextInt(8))
+				{
+					case 0:		//a search: make a few moves and unmake them
+						int length = 1 + random.nextInt(10);
+
+						for (int m = 0; m < length; m++)
+						{
+							game.makeMove(random.nextInt(4), enemyDirs.clone());
+							check(game, random);
+						}
+
+						for (int m = 0; m < length; m++)
+							game.unmakeMove();
+
+						check(game, random);
+						break;
+
+					case 1:		//bring a copy from earlier (possibly of another level) up to date
+						if (stale == null)
+							stale = (_Game) game.copy();
+						else
+						{
+							game.copyInto(stale);
+							check(stale, random);
+							stale.advanceGame(heroDir, enemyDirs.clone());
+							check(stale, random);
+							stale.loadSnapshot(game.saveSnapshot(null));
+							check(stale, random);
+						}
+						break;
+				}
+
+				game.advanceGame(heroDir, enemyDirs.clone());
+				check(game, random);
+				levels += (game.events & Game.Event.LEVEL_CHANGED) != 0 ? 1 : 0;
+			}
+		}
+
+		System.out.println(String.format("%d games (%d level changes): %d checks, %d mismatches", games, levels, checks, mismatches));
+
+		if (mismatches > 0)
+			throw new AssertionError("Corridor pill masks differ from the pills");
+
+		if (levels == 0)
+			throw new AssertionError("The games did not cover level changes");
+	}
+
+	private static void check(_Game game, GameRandom random)
+	{
+		_Maze maze = _Game.mazes[game.curMaze];
+
+		for (Corridor corridor : maze.getCorridors())
+		{
+			int[] pillIndices = corridor.getPillIndices();
+			long mask = 0;
+
+			for (int bit = 0; bit < pillIndices.length; bit++)
+				if (Bits.get(game.pills, pillIndices[bit]))
+					mask |= 1L << bit;
+
+			if (game.corridorPillMask(corridor.getIndex()) != mask || game.pillsOnCorridor(corridor.getIndex()) != Long.bitCount(mask))
+				mismatches++;
+
+			checks++;
+		}
+
+		for (int path = 0; path < PATHS; path++)
+		{
+			int from = random.nextInt(maze.graph.length), to = random.nextInt(maze.graph.length);
+
+			if (maze.getDistance(from, to) < 0)
+				continue;
+
+			int pills = 0;
+
+			for (int node = from; node != to; )
+			{
+				node = game.neighbor(node, game.nextDir(node, to, true));
+
+				if (maze.graph[node].isPill() && game.isPillAvailable(node))
+					pills++;
+			}
+
+			if (game.pillsAlongPath(from, to) != pills)
+				mismatches++;
+
+			checks++;
+		}
+	}
+
+	private static int nearestPillDir(_Game game)
+	{
+		int hero = game.heroNode(), target = -1, best = Integer.MAX_VALUE;
+
+		for (int pill = Bits.next(game.pills, 0); pill >= 0; pill = Bits.next(game.pills, pill + 1))
+			if (game.distance(hero, game.pillNode(pill)) < best)
+			{
+				best = game.distance(hero, game.pillNode(pill));
+				target = game.pillNode(pill);
+			}
+
+		return target < 0 || target == hero ? -1 : game.nextDir(hero, target, true);
+	}
+}
@@ -0,0 +1,38 @@
+package game.system;
+
+import java.util.stream.IntStream;
+
+import game.models.Node;
+
+/*
+ * One byte per (from, to) pair. The fastest option, but it grows with the square of the number of nodes.
+ */
+final class DenseNextDirTable implements NextDirTable
+{
+    private final int size;
+    private final byte[] entries;
+
+    DenseNextDirTable(final Node[] graph)
+    {
+        size = graph.length;
+        entries = new byte[size * size];
+
+        IntStream.range(0, size).parallel().forEach(from ->
+        {
+            _Node node = (_Node) graph[from];
+
+            for (int to = 0; to < size; to++)
+                entries[from * size + to] = (byte) node.getNextDirEntry(to);
+        });
+    }
+
+    public int get(int from, int to)
+    {
+        return entries[from * size + to] & 0xFF;
+    }
+
+    public long getMemoryUsage()
+    {
+        return entries.length;
+    }
+}
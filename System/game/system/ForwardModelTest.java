@@ -0,0 +1,150 @@
+package game.system;
+
+import java.util.Arrays;
+
+import game.models.Game;
+import game.models.GameRandom;
+import game.models.GameSnapshot;
+
+/*
+ * Check of the make/unmake forward model: games are played by a greedy hero (so that levels do get cleared) against
+ * mostly random enemies, and at random points a sequence of random moves is played both with makeMove(-) on the game
+ * and with advanceGame(-) on a copy(). The states (see saveState(-)) and events must agree bit for bit after every move,
+ * and unmaking all the moves must give back the state and events from before. The incremental hash (see Zobrist) must
+ * also equal the one computed from scratch after every tick, move and unmake. Deaths, power pills and level changes
+ * met along the way are counted so that a run that misses them shows. Run with: java game.system.ForwardModelTest [games]
+ */
+public class ForwardModelTest
+{
+	private static final int MAX_MOVES = 12;
+
+	public static void main(String[] args)
+	{
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+
+		GameRandom random = new GameRandom(0);
+		_Game_ game = new _Game_();
+		int[] enemyDirs = new int[Game.NUM_ENEMY];
+		int[][] moves = new int[MAX_MOVES][1 + Game.NUM_ENEMY];
+		long sequences = 0, checks = 0, mismatches = 0, hashMismatches = 0;
+		int deaths = 0, powerPills = 0, levels = 0;
+
+		for (int g = 0; g < games; g++)
+		{
+			game.newGame(g);
+
+			while (!game.gameOver())
+			{
+				if (random.nextInt(4) == 0)
+				{
+					GameSnapshot before = game.saveSnapshot(null);
+					int eventsBefore = game.events;
+					_Game reference = (_Game) game.copy();
+					int length = 1 + random.nextInt(MAX_MOVES);
+
+					for (int m = 0; m < length; m++)
+					{
+						randomMove(random, moves[m]);
+						game.makeMove(moves[m][0], Arrays.copyOfRange(moves[m], 1, moves[m].length));
+						reference.advanceGame(moves[m][0], Arrays.copyOfRange(moves[m], 1, moves[m].length));
+
+						if (!sameState(game, reference) || game.events != reference.events)
+							mismatches++;
+
+						if (!hashConsistent(game) || !hashConsistent(reference))
+							hashMismatches++;
+
+						deaths += (game.events & Game.Event.HERO_EATEN) != 0 ? 1 : 0;
+						powerPills += (game.events & Game.Event.POWER_PILL) != 0 ? 1 : 0;
+						levels += (game.events & Game.Event.LEVEL_CHANGED) != 0 ? 1 : 0;
+						checks++;
+					}
+
+					for (int m = 0; m < length; m++)
+					{
+						game.unmakeMove();
+
+						if (!hashConsistent(game))
+							hashMismatches++;
+					}
+
+					if (!Arrays.equals(game.saveSnapshot(null).ints, before.ints) || !Arrays.equals(game.saveSnapshot(null).longs, before.longs)
+							|| game.events != eventsBefore || game.getUndoDepth() != 0)
+						mismatches++;
+
+					sequences++;
+					checks++;
+				}
+
+				for (int i = 0; i < enemyDirs.length; i++)
+					enemyDirs[i] = random.nextInt(3) == 0 ? random.nextInt(4) : -1;
+
+				game.advanceGame(greedyDir(game, random), enemyDirs);
+
+				if (!hashConsistent(game))
+					hashMismatches++;
+
+				deaths += (game.events & Game.Event.HERO_EATEN) != 0 ? 1 : 0;
+				powerPills += (game.events & Game.Event.POWER_PILL) != 0 ? 1 : 0;
+				levels += (game.events & Game.Event.LEVEL_CHANGED) != 0 ? 1 : 0;
+			}
+		}
+
+		System.out.println(String.format("%d games, %d move sequences, %d checks (%d deaths, %d power pills, %d level changes): %d mismatches, %d wrong hashes",
+				games, sequences, checks, deaths, powerPills, levels, mismatches, hashMismatches));
+
+		if (mismatches > 0)
+			throw new AssertionError("makeMove/unmakeMove differ from copy()/advanceGame(-)");
+
+		if (hashMismatches > 0)
+			throw new AssertionError("The incremental hash differs from the one computed from the state");
+
+		if (deaths == 0 || powerPills == 0 || levels == 0)
+			throw new AssertionError("The games did not cover deaths, power pills and level changes");
+	}
+
+	private static boolean hashConsistent(_Game game)
+	{
+		return game.stateHash() == game.computeHash();
+	}
+
+	private static boolean sameState(_Game a, _Game b)
+	{
+		GameSnapshot first = a.saveSnapshot(null), second = b.saveSnapshot(null);
+		return Arrays.equals(first.ints, second.ints) && Arrays.equals(first.longs, second.longs);
+	}
+
+	//A random move, with the hero mostly going on and the enemies mostly left to the game
+	private static void randomMove(GameRandom random, int[] move)
+	{
+		move[0] = random.nextInt(5) == 0 ? random.nextInt(4) : -1;
+
+		for (int i = 1; i < move.length; i++)
+			move[i] = random.nextInt(3) == 0 ? random.nextInt(4) : -1;
+	}
+
+	//Towards the nearest remaining pill or power pill most of the time, at random otherwise
+	private static int greedyDir(_Game game, GameRandom random)
+	{
+		if (random.nextInt(10) == 0)
+			return random.nextInt(4);
+
+		int hero = game.heroNode(), target = -1, best = Integer.MAX_VALUE;
+
+		for (int pill = Bits.next(game.pills, 0); pill >= 0; pill = Bits.next(game.pills, pill + 1))
+			if (game.distance(hero, game.pillNode(pill)) < best)
+			{
+				best = game.distance(hero, game.pillNode(pill));
+				target = game.pillNode(pill);
+			}
+
+		for (int pill = Bits.next(game.powerPills, 0); pill >= 0; pill = Bits.next(game.powerPills, pill + 1))
+			if (game.distance(hero, game.powerPillNode(pill)) < best)
+			{
+				best = game.distance(hero, game.powerPillNode(pill));
+				target = game.powerPillNode(pill);
+			}
+
+		return target < 0 || target == hero ? -1 : game.nextDir(hero, target, true);
+	}
+}
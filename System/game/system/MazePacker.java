@@ -0,0 +1,139 @@
+package game.system;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+import game.models.Node;
+
+/*
+ * Converts the text maze files (a..d and da..dd) into binary maze packs that _Maze maps into memory on start-up.
+ * Run it once from the directory the game is executed in (the one containing 'data'):
+ *
+ *     java game.system.MazePacker
+ *
+ * Layout of a pack (little endian, see _Maze.loadPack(-)):
+ *   int magic, int version, int CRC-32 of the text node file the pack was made from (see sourceChecksum(-))
+ *   int nameLength, byte[nameLength] name (UTF-8), padded to a multiple of 4 bytes
+ *   int[PREAMBLE_LENGTH]  initial hero, lair, initial enemies, #nodes, #pills, #power pills, #junctions, width, height
+ *   int[#nodes][NODE_LENGTH]  index, x, y, up, right, down, left, pill index, power pill index
+ *   short[#nodes*(#nodes+1)/2]  triangular distance table, in the same order as the distance files
+ */
+public final class MazePacker
+{
+    static final int MAGIC = 0x4B41504D;    // "MPAK"
+    static final int VERSION = 2;
+    static final int PREAMBLE_LENGTH = 9;
+    static final int NODE_LENGTH = 9;
+
+    public static void main(String[] args) throws IOException
+    {
+        for (int index = 0; index < _Game.NUM_MAZES; index++)
+        {
+            long start = System.currentTimeMillis();
+            _Maze maze = new _Maze(index, false);
+            File pack = new File(_Game.pathMazes + System.getProperty("file.separator") + _Game.packNames[index]);
+
+            write(maze, pack, (int) sourceChecksum(index));
+            System.out.println(maze.getName() + " -> " + pack + " (" + pack.length() + " bytes, " + (System.currentTimeMillis() - start) + " ms)");
+        }
+    }
+
+    static int align(int position)
+    {
+        return (position + 3) & ~3;
+    }
+
+    /*
+     * CRC-32 of the text node file of a maze, which identifies the maze a pack was made from (the distance file is
+     * derived from it and too large to check on every start-up); -1 if there is no node file
+     */
+    static long sourceChecksum(int index) throws IOException
+    {
+        File nodes = new File(_Game.pathMazes + System.getProperty("file.separator") + _Game.nodeNames[index]);
+
+        if (!nodes.isFile())
+            return -1;
+
+        CRC32 crc = new CRC32();
+        crc.update(Files.readAllBytes(nodes.toPath()));
+        return crc.getValue();
+    }
+
+    private static void write(_Maze maze, File pack, int checksum) throws IOException
+    {
+        Node[] graph = maze.graph;
+        byte[] name = maze.getName().getBytes(StandardCharsets.UTF_8);
+        int distanceCount = _Maze.rowStart(graph.length);
+        int header = align(16 + name.length) + 4 * (PREAMBLE_LENGTH + NODE_LENGTH * graph.length);
+
+        if (header + 2L * distanceCount > Integer.MAX_VALUE)
+            throw new IOException("Maze " + maze.getName() + " has too many nodes (" + graph.length + ") for a pack");
+
+        ByteBuffer buffer = ByteBuffer.allocate(header + 2 * distanceCount).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(checksum).putInt(name.length).put(name);
+        buffer.position(align(buffer.position()));
+
+        buffer.putInt(maze.initialHeroPosition.getIndex());
+        buffer.putInt(maze.lairPosition.getIndex());
+        buffer.putInt(maze.initialEnemiesPosition.getIndex());
+        buffer.putInt(graph.length);
+        buffer.putInt(maze.pillNodes.length);
+        buffer.putInt(maze.powerPillNodes.length);
+        buffer.putInt(maze.junctionNodes.length);
+        buffer.putInt(maze.width);
+        buffer.putInt(maze.height);
+
+        for (Node entry : graph)
+        {
+            _Node node = (_Node) entry;
+            buffer.putInt(node.getIndex()).putInt(node.getX()).putInt(node.getY());
+
+            for (int direction = 0; direction < 4; direction++)
+            {
+                Node neighbor = node.getNeighbor(direction);
+                buffer.putInt(neighbor == null ? -1 : neighbor.getIndex());
+            }
+
+            buffer.putInt(node.getPillIndex()).putInt(node.getPowerPillIndex());
+        }
+
+        for (int index = 0; index < distanceCount; index++)
+            buffer.putShort(maze.distances.get(index));
+
+        buffer.flip();
+
+        // Written next to the pack and then renamed over it, so that _Maze never maps a pack that is half written.
+        File temp = File.createTempFile(pack.getName(), ".tmp", pack.getAbsoluteFile().getParentFile());
+
+        try
+        {
+            try (FileChannel channel = new FileOutputStream(temp).getChannel())
+            {
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+            }
+
+            try
+            {
+                Files.move(temp.toPath(), pack.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(temp.toPath(), pack.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package game.system;
+
+/*
+ * Stores, for every pair of nodes of a maze, the first direction to take to approach the target along a shortest
+ * path (low 4 bits) and the direction that retreats from it the most (high 4 bits). 0xF means there is no move.
+ */
+interface NextDirTable
+{
+    public int get(int from, int to);       // Returns the packed entry for the pair of node indices
+    public long getMemoryUsage();           // Returns the (approximate) number of bytes used by the table
+}
@@ -0,0 +1,69 @@
+package game.system;
+
+import java.util.Random;
+
+/*
+ * Compares the dense and the compressed next-direction tables of every maze: checks that both give the same answers
+ * and reports their memory use and lookup latency, so one can decide per maze which one to use (see
+ * _Game.compressNextDirs). Run it from the directory the game is executed in (the one containing 'data'):
+ *
+ *     java game.system.NextDirTableReport
+ */
+public final class NextDirTableReport
+{
+    private static final int QUERIES = 1 << 22;
+
+    private static long checksum;       //sum of all the entries looked up, printed so that the lookups cannot be optimised away
+
+    public static void main(String[] args)
+    {
+        System.out.println("maze\tnodes\tdense bytes\tcompressed bytes\tratio\tdense ns/query\tcompressed ns/query");
+
+        for (int index = 0; index < _Game.NUM_MAZES; index++)
+        {
+            _Maze maze = new _Maze(index);
+            int size = maze.getNumberOfNodes();
+
+            NextDirTable dense = new DenseNextDirTable(maze.graph);
+            NextDirTable compressed = new CompressedNextDirTable(maze.graph);
+
+            for (int from = 0; from < size; from++)
+                for (int to = 0; to < size; to++)
+                    if (dense.get(from, to) != compressed.get(from, to))
+                        throw new IllegalStateException("Tables differ for maze " + maze.getName() + " at (" + from + "," + to + ")");
+
+            Random random = new Random(0);
+            int[] queries = new int[2 * QUERIES];
+            for (int query = 0; query < queries.length; query++)
+                queries[query] = random.nextInt(size);
+
+            double denseTime = time(dense, queries);
+            double compressedTime = time(compressed, queries);
+
+            System.out.printf("%s\t%d\t%d\t%d\t%.1fx\t%.1f\t%.1f%n", maze.getName(), size, dense.getMemoryUsage(), compressed.getMemoryUsage(),
+                    (double) dense.getMemoryUsage() / compressed.getMemoryUsage(), denseTime, compressedTime);
+        }
+
+        System.out.println("checksum of the lookups: " + checksum);
+    }
+
+    //Average time per lookup in nanoseconds (best of a few rounds, to leave out the warm-up)
+    private static double time(NextDirTable table, int[] queries)
+    {
+        long best = Long.MAX_VALUE;
+        long sum = 0;
+
+        for (int round = 0; round < 5; round++)
+        {
+            long start = System.nanoTime();
+
+            for (int query = 0; query < queries.length; query += 2)
+                sum += table.get(queries[query], queries[query + 1]);
+
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        checksum += sum;
+        return (double) best / (queries.length / 2);
+    }
+}
@@ -0,0 +1,108 @@
+package game.system;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import game.models.Game;
+import game.models.GameSnapshot;
+
+/*
+ * Lock-free channel through which the engine thread publishes the live state of a game to other threads (a seqlock).
+ * The state is stored in the fixed layout of saveState(-). The sequence number is odd while the engine writes it and
+ * even otherwise; a reader copies the state and retries if the sequence changed in the meantime, so it never sees a
+ * torn state (e.g., pills already eaten but the hero not moved yet) and never blocks the engine. Version n is the n-th
+ * state published (0: none yet).
+ *
+ * The slots are atomic arrays: their accesses cannot be reordered with those of the sequence number, which a plain
+ * array would allow under the Java memory model. There must be a single writer.
+ */
+public final class StateChannel
+{
+	private final AtomicLong sequence = new AtomicLong();
+	private final AtomicIntegerArray ints;
+	private final AtomicLongArray longs;
+
+	//state being published (engine thread only)
+	private final int[] outInts;
+	private final long[] outLongs;
+
+	private final ThreadLocal<GameSnapshot> buffers;
+
+	public StateChannel()
+	{
+		new _Game().init();		//the layout depends on the number of pills of the mazes
+
+		final int intSize = _Game.getIntStateSize();
+		final int longSize = _Game.getLongStateSize();
+
+		ints = new AtomicIntegerArray(intSize);
+		longs = new AtomicLongArray(longSize);
+		outInts = new int[intSize];
+		outLongs = new long[longSize];
+		buffers = ThreadLocal.withInitial(() -> new GameSnapshot(intSize, longSize));
+	}
+
+	//Publishes the state of the game (to be called by one thread only) and returns its version
+	public long publish(Game game)
+	{
+		((_Game) game).saveState(outInts, 0, outLongs, 0);
+
+		long start = sequence.get();
+		sequence.set(start + 1);
+
+		for (int i = 0; i < outInts.length; i++)
+			ints.set(i, outInts[i]);
+
+		for (int i = 0; i < outLongs.length; i++)
+			longs.set(i, outLongs[i]);
+
+		sequence.set(start + 2);
+		return (start + 2) / 2;
+	}
+
+	//Version of the latest state published
+	public long getVersion()
+	{
+		return sequence.get() / 2;
+	}
+
+	//Copies the latest state into the snapshot and returns its version (0 if nothing has been published yet)
+	public long read(GameSnapshot snapshot)
+	{
+		while (true)
+		{
+			long start = sequence.get();
+
+			if ((start & 1) != 0)
+			{
+				Thread.yield();		//the engine is writing
+				continue;
+			}
+
+			for (int i = 0; i < snapshot.ints.length; i++)
+				snapshot.ints[i] = ints.get(i);
+
+			for (int i = 0; i < snapshot.longs.length; i++)
+				snapshot.longs[i] = longs.get(i);
+
+			if (sequence.get() == start)
+				return start / 2;
+		}
+	}
+
+	/*
+	 * Overwrites the game (e.g., a copy owned by the calling thread) with the latest state and returns its version. The
+	 * game is left unchanged if nothing has been published yet.
+	 */
+	public long read(Game game)
+	{
+		GameSnapshot buffer = buffers.get();
+		long version = read(buffer);
+
+		if (version > 0)
+			game.loadSnapshot(buffer);
+
+		return version;
+	}
+}
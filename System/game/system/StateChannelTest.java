@@ -0,0 +1,107 @@
+package game.system;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import game.models.Game;
+import game.models.GameRandom;
+import game.models.GameSnapshot;
+
+/*
+ * Stress test of StateChannel: an engine thread plays games as fast as it can and publishes every state, while reader
+ * threads keep reading the latest one. Each state read is checked against the fingerprint of the state published
+ * under the same version, and the hash stored in it against the hash recomputed from the actors and pills it holds.
+ * A torn read would fail both. Run with: java game.system.StateChannelTest [states] [readers]
+ */
+public class StateChannelTest
+{
+	public static void main(String[] args) throws InterruptedException
+	{
+		final int states = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		final int readers = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+		final StateChannel channel = new StateChannel();
+		final long[] fingerprints = new long[states + 1];
+		final AtomicLong reads = new AtomicLong(), torn = new AtomicLong(), inconsistent = new AtomicLong(), stale = new AtomicLong();
+
+		Thread engine = new Thread(() ->
+		{
+			_Game_ game = new _Game_();
+			GameSnapshot snapshot = null;
+			GameRandom random = new GameRandom(0);
+			int[] enemyDirs = new int[Game.NUM_ENEMY];
+
+			game.newGame(0);
+
+			for (int version = 1; version <= states; version++)
+			{
+				if (game.gameOver())
+					game.newGame(version);
+
+				for (int i = 0; i < enemyDirs.length; i++)
+					enemyDirs[i] = random.nextInt(4);
+
+				game.advanceGame(random.nextInt(4), enemyDirs);
+
+				snapshot = game.saveSnapshot(snapshot);
+				fingerprints[version] = fingerprint(snapshot);	//written before the state is published
+				channel.publish(game);
+			}
+		}, "engine");
+
+		Thread[] threads = new Thread[readers];
+
+		for (int r = 0; r < readers; r++)
+		{
+			threads[r] = new Thread(() ->
+			{
+				_Game_ game = new _Game_();
+				game.newGame(0);
+				GameSnapshot snapshot = game.saveSnapshot(null);
+				long last = 0;
+
+				while (last < states)
+				{
+					long version = channel.read(snapshot);
+
+					if (version == 0)
+						continue;
+
+					reads.incrementAndGet();
+
+					if (version < last)
+						stale.incrementAndGet();
+
+					if (fingerprint(snapshot) != fingerprints[(int) version])
+						torn.incrementAndGet();
+
+					game.loadSnapshot(snapshot);
+
+					if (game.computeHash() != game.stateHash())
+						inconsistent.incrementAndGet();
+
+					last = version;
+				}
+			}, "reader-" + r);
+			threads[r].start();
+		}
+
+		long start = System.nanoTime();
+		engine.start();
+		engine.join();
+
+		for (Thread thread : threads)
+			thread.join();
+
+		System.out.println(String.format("%d states published in %.0f ms, %d reads by %d readers: %d torn, %d inconsistent, %d out of order",
+				states, (System.nanoTime() - start) / 1e6, reads.get(), readers, torn.get(), inconsistent.get(), stale.get()));
+
+		if (torn.get() + inconsistent.get() + stale.get() > 0)
+			throw new AssertionError("StateChannel returned torn states");
+	}
+
+	private static long fingerprint(GameSnapshot snapshot)
+	{
+		return 31L * Arrays.hashCode(snapshot.ints) + Arrays.hashCode(snapshot.longs);
+	}
+}
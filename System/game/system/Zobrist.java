@@ -0,0 +1,66 @@
+package game.system;
+
+/*
+ * Keys for the incremental (Zobrist-style) hash of the game state. Every feature of the state (the node of the hero,
+ * the lair time of enemy 2, pill 17 still being available, ...) has a pseudo-random 64-bit key and the hash of a
+ * state is the XOR of the keys of its features. When a feature changes, its old key is XORed out and the new one in.
+ * The keys are derived from the feature and its value with the SplitMix64 finalizer, so they need no tables and are
+ * the same in every run.
+ */
+final class Zobrist
+{
+    private static final int HERO_NODE = 1, HERO_DIR = 2, PILL = 3, POWER_PILL = 4, LEVEL = 5, LIVES = 6;
+    private static final int ENEMY_NODE = 16, ENEMY_DIR = 32, ENEMY_EDIBLE = 48, ENEMY_LAIR = 64;
+
+    private Zobrist() { }
+
+    static long hero(int node, int direction)
+    {
+        return key(HERO_NODE, node) ^ key(HERO_DIR, direction);
+    }
+
+    static long enemy(int whichEnemy, int node, int direction, int edibleTime, int lairTime)
+    {
+        return key(ENEMY_NODE + whichEnemy, node) ^ key(ENEMY_DIR + whichEnemy, direction)
+                ^ key(ENEMY_EDIBLE + whichEnemy, edibleTime) ^ key(ENEMY_LAIR + whichEnemy, lairTime);
+    }
+
+    static long pill(int pillIndex)
+    {
+        return key(PILL, pillIndex);
+    }
+
+    static long powerPill(int powerPillIndex)
+    {
+        return key(POWER_PILL, powerPillIndex);
+    }
+
+    static long level(int level)
+    {
+        return key(LEVEL, level);
+    }
+
+    static long lives(int lives)
+    {
+        return key(LIVES, lives);
+    }
+
+    //XOR of the keys of all pills (or power pills) in the set
+    static long pills(long[] set, boolean power)
+    {
+        long hash = 0;
+
+        for (int index = Bits.next(set, 0); index >= 0; index = Bits.next(set, index + 1))
+            hash ^= power ? powerPill(index) : pill(index);
+
+        return hash;
+    }
+
+    private static long key(int feature, int value)
+    {
+        long z = ((long) feature << 32 | (value & 0xFFFFFFFFL)) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
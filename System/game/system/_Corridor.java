@@ -0,0 +1,84 @@
+package game.system;
+
+import java.util.Arrays;
+import java.util.List;
+
+import game.models.Corridor;
+import game.models.Node;
+
+public final class _Corridor implements Corridor
+{
+    private final int index;
+    private final _Maze maze;
+    private final _Node[] nodes;
+    private final int startDirection, endDirection;
+    private final int[] pillIndices, powerPillIndices;
+
+    public int getIndex() { return index; }
+    public Node getStart() { return nodes[0]; }
+    public Node getEnd() { return nodes[nodes.length - 1]; }
+    public int getStartDirection() { return startDirection; }
+    public int getEndDirection() { return endDirection; }
+    public int getLength() { return nodes.length - 1; }
+    public List<Node> getNodes() { return Arrays.asList(Arrays.copyOf(nodes, nodes.length, Node[].class)); }
+    public int[] getPillIndices() { return pillIndices.clone(); }
+    public int[] getPowerPillIndices() { return powerPillIndices.clone(); }
+
+    public Node getOtherEnd(Node end)
+    {
+        if (end == nodes[0])
+            return nodes[nodes.length - 1];
+        else if (end == nodes[nodes.length - 1])
+            return nodes[0];
+        else
+            return null;
+    }
+
+    public int getPosition(Node node)
+    {
+        int nodeIndex = node.getIndex();
+
+        return maze.corridorOf[nodeIndex] == index ? maze.corridorPositions[nodeIndex] : -1;
+    }
+
+    /*
+     * nodes: the nodes from one end to the other; startDirection/endDirection: the directions in which the corridor
+     * leaves them
+     */
+    protected _Corridor(int index, _Node[] nodes, int startDirection, int endDirection, _Maze maze)
+    {
+        this.index = index;
+        this.maze = maze;
+        this.nodes = nodes;
+        this.startDirection = startDirection;
+        this.endDirection = endDirection;
+
+        int pills = 0, powerPills = 0;
+
+        for (int position = 1; position < nodes.length - 1; position++)
+        {
+            if (nodes[position].getPillIndex() >= 0)
+                pills++;
+            else if (nodes[position].getPowerPillIndex() >= 0)
+                powerPills++;
+        }
+
+        this.pillIndices = new int[pills];
+        this.powerPillIndices = new int[powerPills];
+        pills = powerPills = 0;
+
+        for (int position = 1; position < nodes.length - 1; position++)
+        {
+            if (nodes[position].getPillIndex() >= 0)
+                pillIndices[pills++] = nodes[position].getPillIndex();
+            else if (nodes[position].getPowerPillIndex() >= 0)
+                powerPillIndices[powerPills++] = nodes[position].getPowerPillIndex();
+        }
+    }
+
+    //Nodes from the start to the end, without copying (engine only)
+    protected _Node[] nodes()
+    {
+        return nodes;
+    }
+}
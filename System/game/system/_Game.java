@@ -12,8 +12,7 @@
 package game.system;
 import game.models.*;
 
-import java.util.Random;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
 import java.util.ArrayList;
 
@@ -27,14 +26,29 @@ public class _Game implements Game
 	//File names for data
 	public static String[] nodeNames = {"a","b","c","d"};
 	public static String[] distNames = {"da","db","dc","dd"};
+	public static String[] packNames = {"a.pak","b.pak","c.pak","d.pak"};	//binary maze packs written by MazePacker (optional)
+	public static boolean[] compressNextDirs = {false,false,false,false};	//use the compressed next-direction table for a maze (see NextDirTableReport)
 	public static String pathMazes = "data";
+
+	//Compute the shortest path distances from the graphs instead of reading the distance files (optionally checking them against the files)
+	public static boolean computeDistances = false;
+	public static boolean verifyDistances = false;
 	
 	//Static stuff (mazes are immutable - hence static)
 	protected static _Maze[] mazes = new _Maze[NUM_MAZES];
+	protected static int pillWords, powerPillWords;		//largest number of words needed for the pills of a maze
 	
 	//Variables (game state):
-	HashSet<Node> pills, powerPills;
-//	protected BitSet pills,powerPills;
+	//Remaining pills and power pills of the current maze, one bit per pill index (see Bits)
+	protected long[] pills, powerPills;
+
+	/*
+	 * Remaining pills of each corridor of the current maze (see Maze.getCorridors()): bit i is the i-th pill from the
+	 * corridor's start. Not part of the state: the masks follow the pills as they are eaten, and when the pills are
+	 * overwritten (copyInto(-), loadState(-)) only the pills that differ are updated (see setPills(-)).
+	 */
+	protected long[] corridorPills;
+	private int corridorMaze = -1;			//maze the masks refer to
 
 	//level-specific
 	protected int curMaze,totLevel,levelTime,totalTime,score, enemyEatMultiplier;
@@ -47,6 +61,25 @@ public class _Game implements Game
 	protected int livesRemaining;
 	protected boolean extraLife;
 
+	//Incremental hash of the state (see Zobrist): hero, enemies, remaining pills, level and lives
+	protected long hash;
+
+	//Random number generator of this game (random enemy reversals etc.); copies continue the same sequence
+	protected GameRandom rng;
+
+	//Undo stack of makeMove(-)/unmakeMove(), one state (see saveState(-)) per move
+	private int[] undoInts;
+	private long[] undoLongs;
+	private int[] undoEvents;		//events of the tick before each move (not part of the state layout)
+	protected int undoDepth;
+
+	//Set in snapshots: the state can be read (by several threads at once) but not changed
+	protected boolean readOnly;
+
+	//Events (see Game.Event) of the last advanceGame(-), or of all the ticks of the last advanceUntilDecision(-); not part of the state
+	protected int events;
+	private int[] corridorDirs;
+
 	/////////////////////////////////////////////////////////////////////////////
 	/////////////////  Constructors and Initializers   //////////////////////////
 	/////////////////////////////////////////////////////////////////////////////
@@ -54,36 +87,122 @@ public class _Game implements Game
 	//Constructor
 	protected _Game(){}
 
-	//loads the mazes and store them
+	//loads the mazes and store them (once, even if several games are started in parallel)
 	protected void init()
-	{		
-		for(int i=0;i<mazes.length;i++)
-			if(mazes[i]==null)
-				mazes[i]=new _Maze(i);
+	{
+		synchronized (_Game.class)
+		{
+			for(int i=0;i<mazes.length;i++)
+			{
+				if(mazes[i]==null)
+					mazes[i]=new _Maze(i);
+
+				pillWords = Math.max(pillWords, Bits.words(mazes[i].getNumberPills()));
+				powerPillWords = Math.max(powerPillWords, Bits.words(mazes[i].getNumberPowerPills()));
+			}
+		}
 	}
 	
 	//Creates an exact copy of the game
 	public Game copy()
 	{
 		_Game copy=new _Game();
-		copy.pills= (HashSet<Node>) pills.clone();
-		copy.powerPills = (HashSet<Node>) powerPills.clone();
+		copy.hero = hero.clone();
+		copy.enemies = new _Enemy[enemies.length];
+
+		for (int index = 0; index < enemies.length; index++)
+			copy.enemies[index] = enemies[index].clone();
+
+		//the masks come along with the pills, so copyInto(-) finds no pill to change instead of counting them again
+		copy.pills = pills.clone();
+		copy.corridorPills = corridorPills.clone();
+		copy.corridorMaze = corridorMaze;
+		copy.powerPills = powerPills.clone();
+		copy.rng = rng.copy();
+		copyInto(copy);
+
+		return copy;
+	}
+
+	/*
+	 * Creates a read-only copy of the game that can be shared: the engine publishes one per tick for all controllers.
+	 * Queries never change the state (the actors they return are copies), so any number of threads may read it at once
+	 * once it has been safely published. Trying to change it throws an exception; copy() gives a game that can be
+	 * advanced.
+	 */
+	public Game snapshot()
+	{
+		_Game snapshot = (_Game) copy();
+		snapshot.readOnly = true;
+		return snapshot;
+	}
+
+	public boolean isReadOnly()
+	{
+		return readOnly;
+	}
+
+	protected void checkWritable()
+	{
+		if (readOnly)
+			throw new UnsupportedOperationException("Read-only game snapshot: use copy() to obtain a game that can be changed");
+	}
+
+	/*
+	 * Overwrites the target with the state of this game. The target's actors and pill words are reused, so copying
+	 * into a game from an earlier copy() does not allocate (unless the pill words of the mazes differ in length).
+	 * Any moves the target could still unmake are forgotten.
+	 */
+	public void copyInto(Game target)
+	{
+		_Game copy = (_Game) target;
+		copy.checkWritable();
+
 		copy.curMaze=curMaze;
+		copy.setPills(pills, 0);
+		copy.powerPills = Bits.resize(copy.powerPills, mazes[curMaze].getNumberPowerPills());
+		System.arraycopy(powerPills, 0, copy.powerPills, 0, powerPills.length);
+
 		copy.totLevel=totLevel;
 		copy.levelTime=levelTime;
 		copy.totalTime=totalTime;
 		copy.score=score;
 		copy.enemyEatMultiplier = enemyEatMultiplier;
 		copy.gameOver=gameOver;
-		copy.hero = hero.clone();
 		copy.livesRemaining=livesRemaining;
 		copy.extraLife=extraLife;
-		copy.enemies = new _Enemy[enemies.length];
+		copy.hash=hash;
+		copy.rng.setState(rng.getState());
+		copy.undoDepth = 0;
+
+		copy.hero.location = hero.location;
+		copy.hero.direction = hero.direction;
 
 		for (int index = 0; index < enemies.length; index++)
-			copy.enemies[index] = enemies[index].clone();
+		{
+			copy.enemies[index].location = enemies[index].location;
+			copy.enemies[index].direction = enemies[index].direction;
+			copy.enemies[index].edibleTime = enemies[index].edibleTime;
+			copy.enemies[index].lairTime = enemies[index].lairTime;
+		}
+	}
 
-		return copy;
+	//Stores the state in the snapshot (see saveState(-) for the layout); a new snapshot is created if none is given
+	public GameSnapshot saveSnapshot(GameSnapshot snapshot)
+	{
+		if (snapshot == null)
+			snapshot = new GameSnapshot(getIntStateSize(), getLongStateSize());
+
+		saveState(snapshot.ints, 0, snapshot.longs, 0);
+		return snapshot;
+	}
+
+	//Restores a state stored by saveSnapshot(-); any moves that could still be unmade are forgotten
+	public void loadSnapshot(GameSnapshot snapshot)
+	{
+		checkWritable();
+		loadState(snapshot.ints, 0, snapshot.longs, 0);
+		undoDepth = 0;
 	}
 	
 	//If the hero has been eaten or a new level has been reached
@@ -91,22 +210,79 @@ public class _Game implements Game
 	{
 		if(newLevel)
 		{
+			hash ^= Zobrist.level(totLevel) ^ Zobrist.pills(pills, false) ^ Zobrist.pills(powerPills, true);
 			curMaze=(curMaze+1)% _Game.NUM_MAZES;
 			totLevel++;
 			levelTime=0;
-			pills.addAll(mazes[curMaze].getPillNodes());
-			powerPills.addAll(mazes[curMaze].getPowerPillNodes());
+			pills = Bits.fill(pills, mazes[curMaze].getNumberPills());
+			powerPills = Bits.fill(powerPills, mazes[curMaze].getNumberPowerPills());
+			countCorridorPills();
+			hash ^= Zobrist.level(totLevel) ^ Zobrist.pills(pills, false) ^ Zobrist.pills(powerPills, true);
 		}
 
-		hero = new _Hero(mazes[curMaze].getInitialHeroPosition(), _Game.INITIAL_HERO_DIR);
+		if (hero != null)
+			hash ^= actorsKey();
+
+		//the actors are reset in place (they are never shared), so that resets do not allocate
+		if (hero == null)
+			hero = new _Hero(mazes[curMaze].getInitialHeroPosition(), _Game.INITIAL_HERO_DIR);
+		else
+		{
+			hero.location = mazes[curMaze].getInitialHeroPosition();
+			hero.direction = _Game.INITIAL_HERO_DIR;
+		}
 
 		for (int index = 0; index < enemies.length; index++)
 		{
-			enemies[index] = new _Enemy(mazes[curMaze].lairPosition, _Game.INITIAL_ENEMY_DIRS[index], (int)(_Game.LAIR_TIMES[index]*(Math.pow(LAIR_REDUCTION,totLevel))));
+			int lairTime = (int)(_Game.LAIR_TIMES[index]*(Math.pow(LAIR_REDUCTION,totLevel)));
+
+			if (enemies[index] == null)
+				enemies[index] = new _Enemy(mazes[curMaze].lairPosition, _Game.INITIAL_ENEMY_DIRS[index], lairTime);
+			else
+			{
+				enemies[index].location = mazes[curMaze].lairPosition;
+				enemies[index].direction = _Game.INITIAL_ENEMY_DIRS[index];
+				enemies[index].edibleTime = 0;
+				enemies[index].lairTime = lairTime;
+			}
 		}
 
+		hash ^= actorsKey();
 		enemyEatMultiplier = 1;
 	}
+
+	//Computes the hash of the state from scratch (advancing the game keeps it up to date incrementally)
+	protected long computeHash()
+	{
+		return actorsKey() ^ Zobrist.pills(pills, false) ^ Zobrist.pills(powerPills, true) ^ Zobrist.level(totLevel) ^ Zobrist.lives(livesRemaining);
+	}
+
+	private long heroKey()
+	{
+		return Zobrist.hero(hero.location.getIndex(), hero.direction);
+	}
+
+	private long enemyKey(int whichEnemy)
+	{
+		_Enemy enemy = enemies[whichEnemy];
+		return Zobrist.enemy(whichEnemy, enemy.location.getIndex(), enemy.direction, enemy.edibleTime, enemy.lairTime);
+	}
+
+	private long actorsKey()
+	{
+		long key = heroKey();
+
+		for (int index = 0; index < enemies.length; index++)
+			key ^= enemyKey(index);
+
+		return key;
+	}
+
+	//Returns the 64-bit hash of the state, e.g., as the key of a transposition table
+	public long stateHash()
+	{
+		return hash;
+	}
 		
 	/////////////////////////////////////////////////////////////////////////////
 	/////////////////////////////  Game Play   //////////////////////////////////
@@ -114,7 +290,17 @@ public class _Game implements Game
 			
 	//Central method that advances the game state
 	public int[] advanceGame(int heroDir, int[] enemyDirs)
-	{			
+	{
+		checkWritable();
+		int[] actionsTaken = new int[1 + NUM_ENEMY];
+		events = 0;
+		advance(heroDir, enemyDirs, actionsTaken);
+		return actionsTaken;
+	}
+
+	//Advances the game by one tick; the directions actually taken are stored in actionsTaken unless it is null
+	protected void advance(int heroDir, int[] enemyDirs, int[] actionsTaken)
+	{
 		updateHero(heroDir);			//move the hero
 		eatPill();							//eat a pill
 		boolean reverse=eatPowerPill();		//eat a power pill
@@ -122,7 +308,13 @@ public class _Game implements Game
 		
 		//This is primarily done for the replays as reset (as possibly called by feast()) sets the 
 		//last directions to the initial ones, not the ones taken
-		int[] actionsTakens = { hero.direction, enemies[0].direction, enemies[1].direction, enemies[2].direction, enemies[3].direction };
+		if (actionsTaken != null)
+		{
+			actionsTaken[0] = hero.direction;
+
+			for (int i = 0; i < enemies.length; i++)
+				actionsTaken[i + 1] = enemies[i].direction;
+		}
 		
 		feast();							//enemies eat the hero or vice versa
 		
@@ -130,24 +322,301 @@ public class _Game implements Game
 		{
 			if (enemies[i].lairTime > 0)
 			{
+				hash ^= enemyKey(i);
 				enemies[i].lairTime--;
 
 				if (enemies[i].lairTime == 0)
+				{
 					enemies[i].location = mazes[curMaze].initialEnemiesPosition;
+					events |= Event.LAIR_EXIT;
+				}
+
+				hash ^= enemyKey(i);
 			}
 		}
 
 		if(!extraLife && score>=EXTRA_LIFE_SCORE)	//award 1 extra life at 10000 points
 		{
 			extraLife=true;
+			hash ^= Zobrist.lives(livesRemaining) ^ Zobrist.lives(livesRemaining + 1);
 			livesRemaining++;
 		}
 	
 		totalTime++;
 		levelTime++;
 		checkLevelState();	//check if level/game is over
-		
-		return actionsTakens;
+	}
+
+	/*
+	 * Macro-step of the forward model: advances one tick with the directions supplied, then keeps advancing while no
+	 * actor has a choice to make, i.e., the hero is in a corridor (it follows it, never reversing) and no enemy that
+	 * moves in the next tick is at a junction (enemies get no direction, so they keep going). Stops after the first tick
+	 * in which something other than a pill being eaten happens (see Game.Event). Returns the number of ticks played and
+	 * the events of all of them, including the reason for stopping (HERO_DECISION/ENEMY_DECISION).
+	 */
+	public int[] advanceUntilDecision(int heroDir, int[] enemyDirs)
+	{
+		return advanceUntilDecision(heroDir, enemyDirs, true);
+	}
+
+	/*
+	 * Same, but if enemiesDecide is false only the hero's choices end the macro-step: enemies at junctions are left
+	 * to the game (see checkEnemyDir(-)), as when a controller gives them no direction. Much longer steps for
+	 * searches over the hero's moves only.
+	 */
+	public int[] advanceUntilDecision(int heroDir, int[] enemyDirs, boolean enemiesDecide)
+	{
+		checkWritable();
+
+		if (corridorDirs == null)
+			corridorDirs = new int[NUM_ENEMY];
+
+		int ticks = 1;
+		events = 0;
+		advance(heroDir, enemyDirs, null);
+
+		while ((events & ~Event.PILL) == 0 && !atDecision(enemiesDecide))
+		{
+			Arrays.fill(corridorDirs, -1);
+			advance(corridorExit(), corridorDirs, null);
+			ticks++;
+		}
+
+		return new int[] {ticks, events};
+	}
+
+	/*
+	 * Decision points, for running controllers only when there is a choice to make (see Exec): the hero has to decide
+	 * unless it is in a corridor it can only follow, the enemies if one that moves in the next tick is at a junction.
+	 * Both also have to look again after anything but a pill being eaten in the last tick (see Game.Event).
+	 */
+	public boolean heroMustDecide()
+	{
+		return corridorExit() < 0 || (events & ~Event.PILL) != 0;
+	}
+
+	public boolean enemiesMustDecide()
+	{
+		return (events & ~Event.PILL) != 0 || enemyAtJunction();
+	}
+
+	//Direction in which the hero follows its corridor (-1 at a decision point)
+	public int getCorridorDirection()
+	{
+		return corridorExit();
+	}
+
+	//Whether an actor has a choice to make in the next tick (recorded in events)
+	private boolean atDecision(boolean enemiesDecide)
+	{
+		if (corridorExit() < 0)
+			events |= Event.HERO_DECISION;
+
+		if (enemiesDecide && enemyAtJunction())
+			events |= Event.ENEMY_DECISION;
+
+		return (events & (Event.HERO_DECISION | Event.ENEMY_DECISION)) != 0;
+	}
+
+	//Whether an enemy that moves in the next tick is at a junction
+	private boolean enemyAtJunction()
+	{
+		for (_Enemy enemy : enemies)
+			if (enemy.lairTime == 0 && enemy.location.isJunction() && (enemy.edibleTime == 0 || enemy.edibleTime % ENEMY_SPEED_REDUCTION != 0))
+				return true;
+
+		return false;
+	}
+
+	//The only direction in which the hero can go on without reversing (-1 if there is none or more than one)
+	private int corridorExit()
+	{
+		if (hero.direction < 0 || hero.direction > 3)
+			return -1;
+
+		int exit = -1;
+		int reverse = Node.getReverse(hero.direction);
+
+		for (int dir = 0; dir < 4; dir++)
+		{
+			if (dir != reverse && hero.location.getNeighbor(dir) != null)
+			{
+				if (exit >= 0)
+					return -1;
+
+				exit = dir;
+			}
+		}
+
+		return exit;
+	}
+
+	/*
+	 * Make/unmake interface of the forward model: makeMove(-) saves the complete game state (including the position
+	 * of the random number generator) on an undo stack before advancing the game, and unmakeMove() restores it
+	 * exactly, together with the events of the tick before (see heroMustDecide()). A search can thus walk the game tree depth-first on a single instance instead of copying the game at
+	 * every node. Once the stack has grown to the depth of the search, neither method allocates.
+	 */
+	public void makeMove(int heroDir, int[] enemyDirs)
+	{
+		checkWritable();
+		int intSize = getIntStateSize();
+		int longSize = getLongStateSize();
+
+		if (undoInts == null || (undoDepth + 1) * intSize > undoInts.length)
+		{
+			int capacity = undoInts == null ? 16 : 2 * undoDepth;
+			undoInts = undoInts == null ? new int[capacity * intSize] : Arrays.copyOf(undoInts, capacity * intSize);
+			undoLongs = undoLongs == null ? new long[capacity * longSize] : Arrays.copyOf(undoLongs, capacity * longSize);
+			undoEvents = undoEvents == null ? new int[capacity] : Arrays.copyOf(undoEvents, capacity);
+		}
+
+		saveState(undoInts, undoDepth * intSize, undoLongs, undoDepth * longSize);
+		undoEvents[undoDepth] = events;
+		undoDepth++;
+
+		events = 0;
+		advance(heroDir, enemyDirs, null);
+	}
+
+	public void unmakeMove()
+	{
+		if (undoDepth == 0)
+			throw new IllegalStateException("No move to unmake");
+
+		undoDepth--;
+		loadState(undoInts, undoDepth * getIntStateSize(), undoLongs, undoDepth * getLongStateSize());
+		events = undoEvents[undoDepth];
+	}
+
+	//Number of moves that can currently be unmade
+	public int getUndoDepth()
+	{
+		return undoDepth;
+	}
+
+	/*
+	 * The game state in a fixed layout of ints and longs:
+	 *   ints:  maze, level, level time, total time, score, enemy eat multiplier, game over, lives, extra life,
+	 *          hero node and direction, then node, direction, edible time and lair time of each enemy
+	 *   longs: random number generator, state hash, pill words, power pill words (both padded to the largest maze)
+	 */
+	protected static int getIntStateSize()
+	{
+		return 11 + 4 * NUM_ENEMY;
+	}
+
+	protected static int getLongStateSize()
+	{
+		return 2 + pillWords + powerPillWords;
+	}
+
+	protected void saveState(int[] ints, int intOffset, long[] longs, int longOffset)
+	{
+		ints[intOffset++] = curMaze;
+		ints[intOffset++] = totLevel;
+		ints[intOffset++] = levelTime;
+		ints[intOffset++] = totalTime;
+		ints[intOffset++] = score;
+		ints[intOffset++] = enemyEatMultiplier;
+		ints[intOffset++] = gameOver ? 1 : 0;
+		ints[intOffset++] = livesRemaining;
+		ints[intOffset++] = extraLife ? 1 : 0;
+		ints[intOffset++] = hero.location.getIndex();
+		ints[intOffset++] = hero.direction;
+
+		for (_Enemy enemy : enemies)
+		{
+			ints[intOffset++] = enemy.location.getIndex();
+			ints[intOffset++] = enemy.direction;
+			ints[intOffset++] = enemy.edibleTime;
+			ints[intOffset++] = enemy.lairTime;
+		}
+
+		longs[longOffset++] = rng.getState();
+		longs[longOffset++] = hash;
+		System.arraycopy(pills, 0, longs, longOffset, pills.length);
+		System.arraycopy(powerPills, 0, longs, longOffset + pillWords, powerPills.length);
+	}
+
+	protected void loadState(int[] ints, int intOffset, long[] longs, int longOffset)
+	{
+		curMaze = ints[intOffset++];
+		totLevel = ints[intOffset++];
+		levelTime = ints[intOffset++];
+		totalTime = ints[intOffset++];
+		score = ints[intOffset++];
+		enemyEatMultiplier = ints[intOffset++];
+		gameOver = ints[intOffset++] != 0;
+		livesRemaining = ints[intOffset++];
+		extraLife = ints[intOffset++] != 0;
+
+		Node[] graph = mazes[curMaze].graph;
+		hero.location = graph[ints[intOffset++]];
+		hero.direction = ints[intOffset++];
+
+		for (_Enemy enemy : enemies)
+		{
+			enemy.location = graph[ints[intOffset++]];
+			enemy.direction = ints[intOffset++];
+			enemy.edibleTime = ints[intOffset++];
+			enemy.lairTime = ints[intOffset++];
+		}
+
+		rng.setState(longs[longOffset++]);
+		hash = longs[longOffset++];
+		setPills(longs, longOffset);
+		powerPills = Bits.resize(powerPills, mazes[curMaze].getNumberPowerPills());
+		System.arraycopy(longs, longOffset + pillWords, powerPills, 0, powerPills.length);
+	}
+
+	/*
+	 * Overwrites the pills of the current maze with the given words. If the corridor masks are those of the same maze,
+	 * only the pills that differ are changed in them, so restoring a state a few moves back (see unmakeMove()) costs
+	 * little more than copying the words.
+	 */
+	private void setPills(long[] words, int offset)
+	{
+		if (corridorMaze != curMaze || pills == null)
+		{
+			pills = Bits.resize(pills, mazes[curMaze].getNumberPills());
+			System.arraycopy(words, offset, pills, 0, pills.length);
+			countCorridorPills();
+			return;
+		}
+
+		_Maze maze = mazes[curMaze];
+
+		for (int word = 0; word < pills.length; word++)
+		{
+			long changed = pills[word] ^ words[offset + word];
+			pills[word] = words[offset + word];
+
+			for (; changed != 0; changed &= changed - 1)
+			{
+				int pillIndex = (word << 6) + Long.numberOfTrailingZeros(changed);
+
+				if (maze.pillCorridors[pillIndex] >= 0)
+					corridorPills[maze.pillCorridors[pillIndex]] ^= 1L << maze.pillBits[pillIndex];
+			}
+		}
+	}
+
+	//Recomputes the corridor masks from the pills (after a new game or level)
+	protected void countCorridorPills()
+	{
+		_Maze maze = mazes[curMaze];
+
+		if (corridorPills == null || corridorPills.length != maze.corridors.length)
+			corridorPills = new long[maze.corridors.length];
+		else
+			Arrays.fill(corridorPills, 0);
+
+		for (int pillIndex = Bits.next(pills, 0); pillIndex >= 0; pillIndex = Bits.next(pills, pillIndex + 1))
+			if (maze.pillCorridors[pillIndex] >= 0)
+				corridorPills[maze.pillCorridors[pillIndex]] |= 1L << maze.pillBits[pillIndex];
+
+		corridorMaze = curMaze;
 	}
 
 	public Hero getHero() { return hero.clone(); }
@@ -163,36 +632,129 @@ public class _Game implements Game
 		return result;
 	}
 
+	/////////////////////////////////////////////////////////////////////////////
+	///////////////////////  Index-based Queries (IntGame)  /////////////////////
+	/////////////////////////////////////////////////////////////////////////////
+
+	public int heroNode() { return hero.location.getIndex(); }
+	public int heroDirection() { return hero.direction; }
+	public int enemyNode(int whichEnemy) { return enemies[whichEnemy].location.getIndex(); }
+	public int enemyDirection(int whichEnemy) { return enemies[whichEnemy].direction; }
+	public int enemyEdibleTime(int whichEnemy) { return enemies[whichEnemy].edibleTime; }
+	public int enemyLairTime(int whichEnemy) { return enemies[whichEnemy].lairTime; }
+
+	public boolean isPillAvailable(int nodeIndex) { return checkPill(mazes[curMaze].graph[nodeIndex]); }
+	public boolean isPowerPillAvailable(int nodeIndex) { return checkPowerPill(mazes[curMaze].graph[nodeIndex]); }
+	public int pillNode(int pillNumber) { return mazes[curMaze].pillNodes[pillNumber].getIndex(); }
+	public int powerPillNode(int powerPillNumber) { return mazes[curMaze].powerPillNodes[powerPillNumber].getIndex(); }
+
+	public int numberOfNodes() { return mazes[curMaze].graph.length; }
+	public Node node(int nodeIndex) { return mazes[curMaze].graph[nodeIndex]; }
+	public int distance(int fromNode, int toNode) { return mazes[curMaze].getDistance(fromNode, toNode); }
+	public int nextDir(int fromNode, int toNode, boolean approach) { return mazes[curMaze].getNextDir(fromNode, toNode, approach); }
+
+	public int neighbor(int nodeIndex, int direction)
+	{
+		Node neighbor = mazes[curMaze].graph[nodeIndex].getNeighbor(direction);
+		return neighbor == null ? -1 : neighbor.getIndex();
+	}
+
+	public int pillsOnCorridor(int corridor) { return Long.bitCount(corridorPills[corridor]); }
+	public long corridorPillMask(int corridor) { return corridorPills[corridor]; }
+
+	/*
+	 * Follows the shortest path corridor by corridor: the pills passed inside a corridor are counted from its mask
+	 * (those between the positions of the nodes where the path enters and leaves it), those at junctions one by one.
+	 */
+	public int pillsAlongPath(int fromNode, int toNode)
+	{
+		_Maze maze = mazes[curMaze];
+		int pillsLeft = 0;
+		int node = fromNode;
+
+		while (node != toNode)
+		{
+			int direction = maze.getNextDir(node, toNode, true);
+
+			if (direction < 0)
+				break;
+
+			int edge = node * 4 + direction;
+			int corridor = maze.edgeCorridors[edge];
+			boolean forward = maze.forwardEdges[edge];
+			boolean inside = maze.corridorOf[node] == corridor;
+			int next;
+
+			//the path ends inside this corridor if the target lies ahead in it
+			if (maze.corridorOf[toNode] == corridor && (!inside || maze.corridorPositions[toNode] > maze.corridorPositions[node] == forward))
+				next = toNode;
+			else
+				next = (forward ? maze.corridors[corridor].getEnd() : maze.corridors[corridor].getStart()).getIndex();
+
+			boolean nextInside = next == toNode && maze.corridorOf[next] == corridor;
+			int low, high;		//pill bits passed: forward (node, next], backward [next, node)
+
+			if (forward)
+			{
+				low = inside ? maze.pillRanks[node] + (maze.graph[node].isPill() ? 1 : 0) : 0;
+				high = nextInside ? maze.pillRanks[next] + (maze.graph[next].isPill() ? 1 : 0) : 64;
+			}
+			else
+			{
+				low = nextInside ? maze.pillRanks[next] : 0;
+				high = inside ? maze.pillRanks[node] : 64;
+			}
+
+			pillsLeft += Long.bitCount(corridorPills[corridor] & rangeMask(low, high));
+
+			if (!nextInside)
+			{
+				int pillIndex = ((_Node) maze.graph[next]).getPillIndex();
+
+				if (pillIndex >= 0 && Bits.get(pills, pillIndex))
+					pillsLeft++;
+			}
+
+			node = next;
+		}
+
+		return pillsLeft;
+	}
+
+	//Bits low..high-1
+	private static long rangeMask(int low, int high)
+	{
+		if (low >= 64)
+			return 0;
+
+		return (high >= 64 ? -1L : (1L << high) - 1) & (-1L << low);
+	}
+
 	//Updates the location of the hero
 	protected void updateHero(int direction)
 	{
 		direction = checkHeroDir(direction);
+		hash ^= heroKey();
 		hero.direction = direction;
 		hero.location = hero.location.getNeighbor(direction);
+		hash ^= heroKey();
 	}
 		
 	//Checks the direction supplied by the controller and substitutes for a legal one if necessary
 	protected int checkHeroDir(int direction)
 	{
-		List<Node> neighbors = hero.location.getNeighbors();
+		Node location = hero.location;
 		int oldDirection = hero.direction;
-				
-		if((direction > 3 || direction < 0 || neighbors.get(direction) == null) && (oldDirection > 3 || oldDirection < 0 || neighbors.get(oldDirection) == null))
+		boolean oldLegal = oldDirection >= 0 && oldDirection <= 3 && location.getNeighbor(oldDirection) != null;
+
+		if((direction > 3 || direction < 0 || location.getNeighbor(direction) == null) && !oldLegal)
 			return 4;
-		
-		if(direction < 0 || direction > 3)
+
+		//keep going in the old direction if the new one is neutral or blocked
+		if(direction < 0 || direction > 3 || location.getNeighbor(direction) == null)
 			direction = oldDirection;
-		
-		if(neighbors.get(direction) == null)
-			if(neighbors.get(oldDirection) != null)
-				direction = oldDirection;
-			else
-			{
-				List<Integer> options = hero.getPossibleDirs(true);
-				direction = options.get(Game.rng.nextInt(options.size()));
-			}
 
-		return direction;		
+		return direction;
 	}
 	
 	//Updates the locations of the enemies
@@ -205,14 +767,18 @@ public class _Game implements Game
 		{											
 			if(reverse && enemies[i].lairTime == 0)
 			{
+				hash ^= enemyKey(i);
 				enemies[i].direction = Node.getReverse(enemies[i].direction);
 				enemies[i].location = enemies[i].location.getNeighbor(enemies[i].direction);
+				hash ^= enemyKey(i);
 			}
 			else if(enemies[i].lairTime == 0 && (enemies[i].edibleTime == 0 || enemies[i].edibleTime % ENEMY_SPEED_REDUCTION !=0))
 			{
 				directions[i] = checkEnemyDir(i, directions[i]);
+				hash ^= enemyKey(i);
 				enemies[i].direction = directions[i];
 				enemies[i].location = enemies[i].location.getNeighbor(directions[i]);
+				hash ^= enemyKey(i);
 			}
 		}		
 	}
@@ -220,32 +786,59 @@ public class _Game implements Game
 	//Checks the directions supplied by the controller and substitutes for a legal ones if necessary
 	protected int checkEnemyDir(int whichEnemy, int direction)
 	{
+		_Enemy enemy = enemies[whichEnemy];
+
 		if(direction < 0 || direction > 3)
-			direction = enemies[whichEnemy].direction;
-			
-		List<Node> neighbors = enemies[whichEnemy].getPossibleLocations();
-			
-		if(neighbors.get(direction) == null)
+			direction = enemy.direction;
+
+		if(!canMove(enemy, direction))
 		{
-			if(neighbors.get(enemies[whichEnemy].direction) != null)
-				direction = enemies[whichEnemy].direction;
+			if(canMove(enemy, enemy.direction))
+				direction = enemy.direction;
 			else
 			{
-				List<Integer> options = enemies[whichEnemy].getPossibleDirs();
-				direction = options.get(Game.rng.nextInt(options.size()));
+				//take one of the legal directions at random
+				int options = 0;
+				for (int dir = 0; dir < 4; dir++)
+					if (canMove(enemy, dir))
+						options++;
+
+				int choice = rng.nextInt(options);
+				for (int dir = 0; dir < 4; dir++)
+				{
+					if (canMove(enemy, dir) && choice-- == 0)
+					{
+						direction = dir;
+						break;
+					}
+				}
 			}
 		}
 
 		return direction;
 	}
+
+	//Whether the enemy can move in the direction (enemies may not reverse)
+	private static boolean canMove(_Enemy enemy, int direction)
+	{
+		return enemy.location.getNeighbor(direction) != null && direction != Node.getReverse(enemy.direction);
+	}
 		
 	//Eats a pill
 	protected void eatPill()
 	{
-		if (pills.contains(hero.location))
+		int pillIndex = ((_Node) hero.location).getPillIndex();
+
+		if (pillIndex >= 0 && Bits.get(pills, pillIndex))
 		{
 			score += Game.PILL_SCORE;
-			pills.remove(hero.location);
+			events |= Event.PILL;
+			Bits.clear(pills, pillIndex);
+			hash ^= Zobrist.pill(pillIndex);
+
+			int corridor = mazes[curMaze].pillCorridors[pillIndex];
+			if (corridor >= 0)
+				corridorPills[corridor] &= ~(1L << mazes[curMaze].pillBits[pillIndex]);
 		}
 	}
 	
@@ -253,28 +846,37 @@ public class _Game implements Game
 	protected boolean eatPowerPill()
 	{
 		boolean reverse = false;
+		int powerPillIndex = ((_Node) hero.location).getPowerPillIndex();
 
-		if(powerPills.contains(hero.location))
+		if(powerPillIndex >= 0 && Bits.get(powerPills, powerPillIndex))
 		{
 			score += Game.POWER_PILL_SCORE;
+			events |= Event.POWER_PILL;
 			enemyEatMultiplier =1;
-			powerPills.remove(hero.location);
+			Bits.clear(powerPills, powerPillIndex);
+			hash ^= Zobrist.powerPill(powerPillIndex);
 			
 			//This ensures that only enemies outside the lair (i.e., inside the maze) turn edible
 			int newEdibleTime=(int)(Game.EDIBLE_TIME * (Math.pow(Game.EDIBLE_TIME_REDUCTION, totLevel)));
 			
 			for(int i = 0; i< NUM_ENEMY; i++)
+			{
+				hash ^= enemyKey(i);
+
 				if(enemies[i].lairTime == 0)
 					enemies[i].edibleTime = newEdibleTime;
 				else
 					enemies[i].edibleTime = 0;
+
+				hash ^= enemyKey(i);
+			}
 			
 			//This turns all enemies edible, independent on whether they are in the lair or not
 //			Arrays.fill(edibleTimes,(int)(_Game.EDIBLE_TIME*(Math.pow(_Game.EDIBLE_TIME_REDUCTION,totLevel))));
 			
 			reverse = true;
 		}
-		else if (levelTime > 1 && Game.rng.nextDouble() < Game.ENEMY_REVERSAL)	//random enemy reversal
+		else if (levelTime > 1 && rng.nextDouble() < Game.ENEMY_REVERSAL)	//random enemy reversal
 			reverse=true;
 		
 		return reverse;
@@ -292,19 +894,25 @@ public class _Game implements Game
 				if(enemies[i].edibleTime > 0)									//hero eats enemy
 				{
 					score+= Game.ENEMY_EAT_SCORE * enemyEatMultiplier;
+					events |= Event.ENEMY_EATEN;
 					enemyEatMultiplier *=2;
+					hash ^= enemyKey(i);
 					enemies[i].edibleTime = 0;
 					enemies[i].lairTime = (int)(Game.COMMON_LAIR_TIME*(Math.pow(Game.LAIR_REDUCTION,totLevel)));
 					enemies[i].location = mazes[curMaze].lairPosition;
 					enemies[i].direction = Game.INITIAL_ENEMY_DIRS[i];
+					hash ^= enemyKey(i);
 				}
 				else													//enemy eats hero
 				{
+					hash ^= Zobrist.lives(livesRemaining) ^ Zobrist.lives(livesRemaining - 1);
 					livesRemaining--;
+					events |= Event.HERO_EATEN;
 					
 					if(livesRemaining<=0)
 					{
 						gameOver=true;
+						events |= Event.GAME_OVER;
 						return;
 					}
 					else
@@ -314,27 +922,40 @@ public class _Game implements Game
 		}
 		
 		for(int i = 0; i < enemies.length;i++)
+		{
 			if(enemies[i].edibleTime > 0)
+			{
+				hash ^= enemyKey(i);
 				enemies[i].edibleTime--;
+				hash ^= enemyKey(i);
+			}
+		}
 	}
 	
 	//Checks the state of the level/game and advances to the next level or terminates the game
 	protected void checkLevelState()
 	{
 		//if all pills have been eaten or the time is up...
-		if((pills.isEmpty() && powerPills.isEmpty()) || levelTime>=LEVEL_LIMIT)
+		int pillsLeft = Bits.count(pills);
+		int powerPillsLeft = Bits.count(powerPills);
+
+		if((pillsLeft == 0 && powerPillsLeft == 0) || levelTime>=LEVEL_LIMIT)
 		{
 			//award any remaining pills to the hero
-			score+= _Game.PILL_SCORE * pills.size() + Game.POWER_PILL_SCORE * powerPills.size();
+			score+= _Game.PILL_SCORE * pillsLeft + Game.POWER_PILL_SCORE * powerPillsLeft;
 
 			//put a cap on the total number of levels played
 			if(totLevel+1== _Game.MAX_LEVELS)
 			{
 				gameOver=true;
+				events |= Event.GAME_OVER;
 				return;
 			}
 			else
+			{
 				reset(true);
+				events |= Event.LEVEL_CHANGED;
+			}
 		}		
 	}
 	
@@ -351,17 +972,30 @@ public class _Game implements Game
 	//Whether the pill specified is still there
 	public boolean checkPill(Node location)
 	{
-		return pills.contains(location);
+		int pillIndex = ((_Node) location).getPillIndex();
+		return pillIndex >= 0 && Bits.get(pills, pillIndex);
 	}
 	
 	//Whether the power pill specified is still there
 	public boolean checkPowerPill(Node location)
 	{
-		return powerPills.contains(location);
+		int powerPillIndex = ((_Node) location).getPowerPillIndex();
+		return powerPillIndex >= 0 && Bits.get(powerPills, powerPillIndex);
 	}
 
-	public List<Node> getPillList() { return new ArrayList<Node>(pills); }
-	public List<Node> getPowerPillList() { return new ArrayList<Node>(powerPills); }
+	public List<Node> getPillList() { return getNodes(pills, mazes[curMaze].pillNodes); }
+	public List<Node> getPowerPillList() { return getNodes(powerPills, mazes[curMaze].powerPillNodes); }
+
+	//Returns the nodes whose (power) pill index is in the set
+	private static List<Node> getNodes(long[] set, Node[] nodes)
+	{
+		ArrayList<Node> result = new ArrayList<Node>();
+
+		for (int index = Bits.next(set, 0); index >= 0; index = Bits.next(set, index + 1))
+			result.add(nodes[index]);
+
+		return result;
+	}
 
 	//The current level
 	public int getCurLevel()
@@ -404,18 +1038,4 @@ public class _Game implements Game
 	{
 		return totalTime;
 	}
-	
-	//Returns the pill index of the node. If it is -1, the node has no pill. Otherwise one can
-	//use the bitset to check whether the pill has already been eaten
-//	public int getPillIndex(Node node)
-//	{
-//		return node.getPillIndex();
-//	}
-	
-	//Returns the power pill index of the node. If it is -1, the node has no pill. Otherwise one 
-	//can use the bitset to check whether the pill has already been eaten
-//	public int getPowerPillIndex(Node node)
-//	{
-//		return node.getPowerPillIndex();
-//	}
 }
\ No newline at end of file
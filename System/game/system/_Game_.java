@@ -13,23 +13,34 @@
  */
 package game.system;
 
-import java.util.HashSet;
+import game.models.Game;
+import game.models.GameRandom;
 
 public class _Game_ extends _Game
 {
 	public static final int EDIBLE_ALERT=30;	//for display only (ghosts turning blue)
 		
-	//Instantiates everything to start a new game
+	//Instantiates everything to start a new game; the seed of the game is drawn from Game.rng
 	public void newGame()
+	{
+		newGame(Game.rng.nextLong());
+	}
+
+	//Instantiates everything to start a new game whose random events are determined by the seed
+	public void newGame(long seed)
 	{	
 		init();		//load mazes if not yet loaded
 		
 		curMaze=0;
+		rng = new GameRandom(seed);
+		undoDepth = 0;
 
+		hero = null;								//the actors are created by reset(-)
 		enemies = new _Enemy[_Game.NUM_ENEMY];
 
-		pills = new HashSet(mazes[curMaze].getPillNodes());
-		powerPills=new HashSet(mazes[curMaze].getPowerPillNodes());
+		pills = Bits.fill(null, mazes[curMaze].getNumberPills());
+		powerPills = Bits.fill(null, mazes[curMaze].getNumberPowerPills());
+		countCorridorPills();
 		score=0;
 		levelTime=0;
 		totalTime=0;
@@ -39,6 +50,7 @@ public class _Game_ extends _Game
 		gameOver=false;
 		
 		reset(false);
+		hash = computeHash();
 	}
 	
 	//Size of the _Maze (for display only)
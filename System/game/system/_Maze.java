@@ -1,14 +1,21 @@
 package game.system;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.stream.IntStream;
 
-import game.models.DuoMap;
+import game.models.Corridor;
 import game.models.Node;
 import game.models.Maze;
 
@@ -23,11 +30,46 @@ public final class _Maze implements Maze
     public List<Node> getPillNodes() { return Arrays.asList(Arrays.copyOf(pillNodes, pillNodes.length)); }
     public List<Node> getPowerPillNodes() { return Arrays.asList(Arrays.copyOf(powerPillNodes, powerPillNodes.length)); }
     public List<Node> getJunctionNodes() { return Arrays.asList(Arrays.copyOf(junctionNodes, junctionNodes.length)); }
+    public List<Corridor> getCorridors() { return Arrays.asList(Arrays.copyOf(corridors, corridors.length, Corridor[].class)); }
+    public int getNumberOfCorridors() { return corridors.length; }
 
-    protected DuoMap<Node, Node, Integer> distances;
+    public Corridor getCorridor(Node node)
+    {
+        int corridor = corridorOf[node.getIndex()];
+        return corridor < 0 ? null : corridors[corridor];
+    }
+
+    public Corridor getCorridor(Node node, int direction)
+    {
+        if (direction < 0 || direction > 3)
+            return null;
+
+        int corridor = edgeCorridors[node.getIndex() * 4 + direction];
+        return corridor < 0 ? null : corridors[corridor];
+    }
+
+    //Largest maze whose triangular distance table fits in an array (n(n+1)/2 <= Integer.MAX_VALUE)
+    static final int MAX_NODES = 65535;
+
+    protected ShortBuffer distances;
+    protected NextDirTable nextDirs;
     protected Node[] pillNodes, powerPillNodes, junctionNodes;
     protected Node[] graph;
 
+    /*
+     * Corridors between the junctions (see computeCorridors()): the corridor of each node strictly inside one (-1 for
+     * the others) and its position along it, and the corridor of each edge (index node*4+direction, -1 if no edge)
+     */
+    protected _Corridor[] corridors;
+    protected int[] corridorOf, corridorPositions, edgeCorridors;
+    protected boolean[] forwardEdges;       //whether an edge leads from the corridor's start towards its end
+
+    /*
+     * Pills strictly inside the corridors: the corridor of each pill (-1 at junctions) and its rank along the corridor
+     * (i.e., its bit in _Game's corridor pill masks), and for each node inside a corridor the number of pills before it
+     */
+    protected int[] pillCorridors, pillBits, pillRanks;
+
     //The actual maze, stored as a graph (set of nodes)
     protected Node initialHeroPosition, lairPosition, initialEnemiesPosition;
     protected int width, height;	//_Maze-specific information
@@ -39,22 +81,49 @@ public final class _Maze implements Maze
      * For instance, if node '9' has neighbours '[-1,12,-1,6]', you can reach node '12' by going right, and node
      * 6 by going left. The directions returned by the controllers should thus be in {0,1,2,3} and can be used
      * directly to determine the next node to go to.
+     *
+     * If a maze pack (see MazePacker) is present next to the text files it is mapped into memory instead, unless it
+     * is stale or damaged (see loadPack(-)), in which case the text files are loaded after all. If
+     * _Game.computeDistances is set, or the maze comes without a distance file, the distances are computed from the
+     * graph on start-up (see computeDistances()).
      */
     protected _Maze(int index)
     {
-        loadNodes(_Game.nodeNames[index]);
-        loadDistances(_Game.distNames[index]);
+        this(index, true);
+    }
+
+    protected _Maze(int index, boolean usePack)
+    {
+        File pack = new File(_Game.pathMazes + System.getProperty("file.separator") + _Game.packNames[index]);
+
+        if (!usePack || !pack.isFile() || !loadPack(pack, index))
+        {
+            File distanceFile = new File(_Game.pathMazes + System.getProperty("file.separator") + _Game.distNames[index]);
+            loadNodes(_Game.nodeNames[index]);
+
+            if (_Game.computeDistances || !distanceFile.isFile())
+            {
+                distances = ShortBuffer.wrap(computeDistances());
+
+                if (_Game.verifyDistances && distanceFile.isFile())
+                    verifyDistances(loadDistances(_Game.distNames[index]));
+            }
+            else
+                distances = ShortBuffer.wrap(loadDistances(_Game.distNames[index]));
+        }
+
+        computeNextDirs(index);
+        computeCorridors();
     }
 
     //Loads all the nodes from files and initialises all maze-specific information.
     private void loadNodes(String fileName)
     {
-        final int NODE_LENGTH = 9;
         try
         {
             // Prepare a stream to read data from the file.
             BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(_Game.pathMazes + System.getProperty("file.separator") + fileName)));
-            LinkedList<int[]> nodeData = new LinkedList<int[]>();
+            ArrayList<int[]> nodeData = new ArrayList<int[]>();
 
             // First, read in the name of this map.
             String input = reader.readLine();
@@ -75,61 +144,131 @@ public final class _Maze implements Maze
             }
             while (input != null);
 
-            // Load general map information
-            int[] preamble = nodeData.remove();
-            int initialHeroIndex = preamble[0];
-            int lairIndex = preamble[1];
-            int initialEnemiesIndex = preamble[2];
-
-            _Node[] nodes = new _Node[preamble[3]];
-            this.pillNodes = new _Node[preamble[4]];
-            this.powerPillNodes = new _Node[preamble[5]];
-            this.junctionNodes = new _Node[preamble[6]];
-            this.width = preamble[7];
-            this.height = preamble[8];
-
-            this.graph = nodes;
-            int nodeIndex=0;
-            int pillIndex=0;
-            int powerPillIndex=0;
-            int junctionIndex=0;
-
-            // Create the nodes.
-            for (int[] entry : nodeData)
-            {
-                _Node node = new _Node(entry[1], entry[2], entry[7], entry[8], this);
+            buildGraph(nodeData.remove(0), nodeData);
+        }
+        catch(IOException ioe)
+        {
+            ioe.printStackTrace();
+        }
+    }
+
+    /*
+     * Creates and connects the nodes. The preamble holds the general map information and each entry of nodeData
+     * describes one node as '[index,x,y,up,right,down,left,pillIndex,powerPillIndex]'.
+     */
+    private void buildGraph(int[] preamble, List<int[]> nodeData)
+    {
+        int initialHeroIndex = preamble[0];
+        int lairIndex = preamble[1];
+        int initialEnemiesIndex = preamble[2];
+
+        if (preamble[3] > MAX_NODES)
+            throw new IllegalStateException("Maze with " + preamble[3] + " nodes: the distance table holds at most " + MAX_NODES);
+
+        _Node[] nodes = new _Node[preamble[3]];
+        this.pillNodes = new _Node[preamble[4]];
+        this.powerPillNodes = new _Node[preamble[5]];
+        this.junctionNodes = new _Node[preamble[6]];
+        this.width = preamble[7];
+        this.height = preamble[8];
 
-                nodes[nodeIndex++] = node;
+        this.graph = nodes;
+        int nodeIndex=0;
+        int junctionIndex=0;
+
+        // Create the nodes.
+        for (int[] entry : nodeData)
+        {
+            _Node node = new _Node(nodeIndex, entry[1], entry[2], entry[7], entry[8], this);
 
-                if (node.getPillIndex() >= 0)
-                    pillNodes[pillIndex++] = node;
-                else if (node.getPowerPillIndex() >= 0)
-                    powerPillNodes[powerPillIndex++] = node;
+            nodes[nodeIndex++] = node;
 
-                if (node.getNumNeighbors() > 2)
-                    junctionNodes[junctionIndex++] = node;
+            if (node.getPillIndex() >= 0)
+                pillNodes[node.getPillIndex()] = node;
+            else if (node.getPowerPillIndex() >= 0)
+                powerPillNodes[node.getPowerPillIndex()] = node;
+        }
+
+        // Connect the nodes (junctions can only be identified once the neighbours are known).
+        for (int index = 0; index < nodes.length; index++)
+        {
+            int[] entry = nodeData.get(index);
+            _Node[] newNeighbors = new _Node[4];
+            for (int neighborNo = 0; neighborNo < 4; neighborNo++)
+            {
+                int neighborIndex = entry[neighborNo+3];
+                newNeighbors[neighborNo] = (neighborIndex == -1 ? null : nodes[neighborIndex]);
             }
+            nodes[index].setNeighbors(newNeighbors);
+
+            if (nodes[index].getNumNeighbors() > 2)
+                junctionNodes[junctionIndex++] = nodes[index];
+        }
+
+        // Set up the starting positions.
+        this.initialHeroPosition = graph[initialHeroIndex];
+        this.lairPosition = graph[lairIndex];
+        this.initialEnemiesPosition = graph[initialEnemiesIndex];
+    }
+
+    /*
+     * Maps a maze pack into memory. The node table is tiny and is turned into nodes straight away; the distance
+     * table is used in place as a view of the mapped file, so nothing is parsed or copied and several JVMs on the
+     * same machine share the pages through the operating system's cache.
+     *
+     * Returns false (and the maze is then loaded from the text files) if the pack is not a pack of the current
+     * version, was made from a different node file (e.g., the maze has been edited since; see
+     * MazePacker.sourceChecksum(-)), or its distance table does not match its number of nodes.
+     */
+    private boolean loadPack(File pack, int mazeIndex)
+    {
+        try (FileInputStream input = new FileInputStream(pack))
+        {
+            FileChannel channel = input.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
 
-            // Connect the nodes.
-            for (int index = 0; index < nodes.length; index++)
+            if (buffer.getInt() != MazePacker.MAGIC || buffer.getInt() != MazePacker.VERSION)
+                throw new IOException("not a maze pack of version " + MazePacker.VERSION);
+
+            int checksum = buffer.getInt();
+            long source = MazePacker.sourceChecksum(mazeIndex);
+
+            if (source >= 0 && checksum != (int) source)
+                throw new IOException("made from a different version of " + _Game.nodeNames[mazeIndex]);
+
+            byte[] nameBytes = new byte[buffer.getInt()];
+            buffer.get(nameBytes);
+            String name = new String(nameBytes, StandardCharsets.UTF_8);
+            buffer.position(MazePacker.align(buffer.position()));
+
+            int[] preamble = new int[MazePacker.PREAMBLE_LENGTH];
+            for (int index = 0; index < preamble.length; index++)
+                preamble[index] = buffer.getInt();
+
+            int nodes = preamble[3];
+            if (nodes <= 0 || buffer.remaining() != 4L * MazePacker.NODE_LENGTH * nodes + 2L * nodes * (nodes + 1) / 2)
+                throw new IOException("size does not match its " + nodes + " nodes");
+
+            ArrayList<int[]> nodeData = new ArrayList<int[]>(nodes);
+            for (int nodeIndex = 0; nodeIndex < nodes; nodeIndex++)
             {
-                _Node[] newNeighbors = new _Node[4];
-                for (int neighborNo = 0; neighborNo < 4; neighborNo++)
-                {
-                    int neighborIndex = nodeData.get(index)[neighborNo+3];
-                    newNeighbors[neighborNo] = (neighborIndex == -1 ? null : nodes[neighborIndex]);
-                }
-                nodes[index].setNeighbors(newNeighbors);
+                int[] entry = new int[MazePacker.NODE_LENGTH];
+                for (int index = 0; index < entry.length; index++)
+                    entry[index] = buffer.getInt();
+
+                nodeData.add(entry);
             }
 
-            // Set up the starting positions.
-            this.initialHeroPosition = graph[initialHeroIndex];
-            this.lairPosition = graph[lairIndex];
-            this.initialEnemiesPosition = graph[initialEnemiesIndex];
+            buildGraph(preamble, nodeData);
+
+            this.name = name;
+            this.distances = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+            return true;
         }
-        catch(IOException ioe)
+        catch(IOException | RuntimeException e)
         {
-            ioe.printStackTrace();
+            System.err.println("Ignoring maze pack " + pack + " (" + e.getMessage() + "), loading the text files instead");
+            return false;
         }
     }
 
@@ -138,30 +277,214 @@ public final class _Maze implements Maze
      * any node in the maze to any other node. Since the graph is symmetric, the symmetries have been removed to preserve
      * memory and all distances are stored in a 1D array; they are looked-up using getDistance(-).
      */
-    private void loadDistances(String fileName)
+    private short[] loadDistances(String fileName)
     {
-        distances = new DuoMap<Node, Node, Integer>();
+        short[] distances = new short[rowStart(graph.length)];
 
         try
         {
             BufferedReader br=new BufferedReader(new InputStreamReader(new FileInputStream(_Game.pathMazes+System.getProperty("file.separator")+fileName)));
 
-            for (int end = 0; end < graph.length; end++)
+            // The file is laid out exactly like the array: for each end node, the distances to all start nodes <= end.
+            for (int index = 0; index < distances.length; index++)
             {
-                for (int start = 0; start <= end; start++)
+                String input=br.readLine();
+                if (input == null)
+                    break;
+
+                distances[index] = Short.parseShort(input);
+            }
+        }
+        catch(IOException ioe)
+        {
+            ioe.printStackTrace();
+        }
+
+        return distances;
+    }
+
+    /*
+     * Computes the shortest path distances from the graph itself. The graph is unweighted, so a breadth-first search
+     * from each node yields its row of the (triangular) table: the search from node 'end' fills in the distances to
+     * all nodes 'start <= end'. Rows are independent and are spread across the common ForkJoinPool.
+     */
+    private short[] computeDistances()
+    {
+        final short[] distances = new short[rowStart(graph.length)];
+
+        IntStream.range(0, graph.length).parallel().forEach(end ->
+        {
+            int[] depth = new int[graph.length];
+            int[] queue = new int[graph.length];
+            int head = 0, tail = 0;
+
+            Arrays.fill(depth, -1);
+            depth[end] = 0;
+            queue[tail++] = end;
+
+            while (head < tail)
+            {
+                _Node node = (_Node) graph[queue[head++]];
+
+                for (_Node neighbor : node.neighbors)
                 {
-                    String input=br.readLine();
-                    if (input == null)
+                    if (neighbor != null && depth[neighbor.getIndex()] == -1)
+                    {
+                        depth[neighbor.getIndex()] = depth[node.getIndex()] + 1;
+                        queue[tail++] = neighbor.getIndex();
+                    }
+                }
+            }
+
+            int row = rowStart(end);
+            for (int start = 0; start <= end; start++)
+                distances[row + start] = (short) depth[start];
+        });
+
+        return distances;
+    }
+
+    //Compares the computed distances against the ones loaded from file and reports any differences
+    private void verifyDistances(short[] expected)
+    {
+        int mismatches = 0;
+
+        for (int index = 0; index < expected.length; index++)
+            if (distances.get(index) != expected[index])
+                mismatches++;
+
+        if (mismatches > 0)
+            System.err.println("Maze " + name + ": " + mismatches + " of " + expected.length + " computed distances differ from the distance file");
+    }
+
+    /*
+     * Tabulates, for every pair of nodes, the first direction to take to approach the target along a shortest path
+     * and the direction that retreats from it the most. Node.getNextDir(-) and Node.getPath(-) then need a single
+     * lookup per step instead of comparing the distances of all neighbours. Large mazes can use the run-length
+     * compressed table instead of the dense one (see _Game.compressNextDirs and NextDirTableReport), which is built
+     * without the distance table; note that the maze still keeps the distance table itself (n(n+1)/2 shorts), so on
+     * very large mazes it, not the next-direction table, bounds the memory.
+     */
+    private void computeNextDirs(int index)
+    {
+        if (_Game.compressNextDirs[index])
+            nextDirs = new CompressedNextDirTable(graph);
+        else
+            nextDirs = new DenseNextDirTable(graph);
+    }
+
+    /*
+     * Contracts the graph into corridors: from every node that is not simply part of a corridor (i.e., that does not
+     * have exactly two neighbours), each edge not yet covered is followed until the next such node. Every edge thus
+     * belongs to exactly one corridor, and the pills strictly inside a corridor are numbered from its start (at most
+     * 64, so that the remaining ones fit in one long; see _Game.corridorPills). The neighbours are symmetric (going back from a neighbour in the reverse
+     * direction leads back to the node), tunnels included.
+     */
+    private void computeCorridors()
+    {
+        ArrayList<_Corridor> found = new ArrayList<_Corridor>();
+        ArrayList<_Node> path = new ArrayList<_Node>();
+
+        corridorOf = new int[graph.length];
+        corridorPositions = new int[graph.length];
+        edgeCorridors = new int[graph.length * 4];
+        forwardEdges = new boolean[graph.length * 4];
+        Arrays.fill(corridorOf, -1);
+        Arrays.fill(corridorPositions, -1);
+        Arrays.fill(edgeCorridors, -1);
+
+        for (Node end : graph)
+        {
+            if (end.getNumNeighbors() == 2)
+                continue;
+
+            for (int startDirection = 0; startDirection < 4; startDirection++)
+            {
+                if (end.getNeighbor(startDirection) == null || edgeCorridors[end.getIndex() * 4 + startDirection] >= 0)
+                    continue;
+
+                int id = found.size();
+                _Node node = (_Node) end;
+                int direction = startDirection;
+
+                path.clear();
+                path.add(node);
+
+                while (true)
+                {
+                    _Node next = node.neighbors[direction];
+                    edgeCorridors[node.getIndex() * 4 + direction] = id;
+                    forwardEdges[node.getIndex() * 4 + direction] = true;
+                    edgeCorridors[next.getIndex() * 4 + Node.getReverse(direction)] = id;
+                    path.add(next);
+
+                    if (next.getNumNeighbors() != 2)
                         break;
 
-                    distances.put(graph[start], graph[end], Integer.parseInt(input));
-                    distances.put(graph[end], graph[start], Integer.parseInt(input));
+                    corridorOf[next.getIndex()] = id;
+                    corridorPositions[next.getIndex()] = path.size() - 1;
+
+                    int from = Node.getReverse(direction);
+                    for (direction = 0; direction == from || next.neighbors[direction] == null; direction++);
+
+                    node = next;
                 }
+
+                found.add(new _Corridor(id, path.toArray(new _Node[path.size()]), startDirection, Node.getReverse(direction), this));
             }
         }
-        catch(IOException ioe)
+
+        corridors = found.toArray(new _Corridor[found.size()]);
+
+        pillCorridors = new int[pillNodes.length];
+        pillBits = new int[pillNodes.length];
+        pillRanks = new int[graph.length];
+        Arrays.fill(pillCorridors, -1);
+
+        for (_Corridor corridor : corridors)
         {
-            ioe.printStackTrace();
+            _Node[] nodes = corridor.nodes();
+            int rank = 0;
+
+            for (int position = 1; position < nodes.length - 1; position++)
+            {
+                int pillIndex = nodes[position].getPillIndex();
+                pillRanks[nodes[position].getIndex()] = rank;
+
+                if (pillIndex >= 0)
+                {
+                    pillCorridors[pillIndex] = corridor.getIndex();
+                    pillBits[pillIndex] = rank++;
+                }
+            }
+
+            if (rank > 64)
+                throw new IllegalStateException("Maze " + name + ": more than 64 pills in corridor " + corridor.getIndex());
         }
     }
+
+    //Returns the direction to take from one node to approach (or retreat from) another; -1 if there is no move
+    protected int getNextDir(int from, int to, boolean approach)
+    {
+        int entry = nextDirs.get(from, to);
+        int dir = approach ? entry & 0xF : entry >> 4;
+
+        return dir == 0xF ? -1 : dir;
+    }
+
+    //Returns the shortest path distance between the nodes with the given indices (-1 if unreachable)
+    protected int getDistance(int from, int to)
+    {
+        if (from > to)
+            return distances.get(rowStart(from) + to);
+        else
+            return distances.get(rowStart(to) + from);
+    }
+
+    //Index of the first entry of the node's row in the distance table (computed in long: node*(node+1) overflows an int
+    //beyond 46340 nodes, while the index itself fits up to MAX_NODES)
+    static int rowStart(int node)
+    {
+        return (int) ((long) node * (node + 1) / 2);
+    }
 }
@@ -8,17 +8,18 @@ import game.models.Node;
 public class _Node implements Node
 {
     protected _Node[] neighbors = null;
-    private int x, y;
+    private int index, x, y;
     private int pillIndex, powerPillIndex;
     private int numNeighbors = 0;
     private _Maze maze;
 
+    public int getIndex() { return index; }
     public int getX() { return x; }
     public int getY() { return y; }
 
     public boolean isJunction() { return numNeighbors > 2; }
-    public boolean isPill() { return pillIndex <= 0; }
-    public boolean isPowerPill() { return powerPillIndex <= 0; }
+    public boolean isPill() { return pillIndex >= 0; }
+    public boolean isPowerPill() { return powerPillIndex >= 0; }
 
     public int getNumNeighbors() { return numNeighbors; }
     public List<Node> getNeighbors() { return Arrays.asList(Arrays.copyOf(neighbors, neighbors.length)); }
@@ -35,34 +36,38 @@ public class _Node implements Node
 
     public int getNextDir(Node to, boolean approach) { return getNextDir(to, approach, true, 0); }
 
+    /*
+     * Returns the direction of the neighbour that is closest to (approach) or furthest from (retreat) the target. The
+     * answer is read from the maze's next-direction table; only if it would reverse an actor that may not reverse
+     * are the remaining neighbours compared.
+     */
     public int getNextDir(Node to, boolean approach, boolean canReverse, int direction)
     {
-        _Node[] options = Arrays.copyOf(neighbors, neighbors.length);
+        int target = ((_Node) to).index;
+        int excluded = (canReverse || direction < 0 || direction > 3) ? -1 : Node.getReverse(direction);
+        int dir = maze.getNextDir(index, target, approach);
 
-        if (!canReverse)
-            options[direction] = null;
+        if (dir != excluded)
+            return dir;
 
-        int dir = -1;
+        return selectDir(target, approach, excluded);
+    }
 
-        double min = Integer.MAX_VALUE;
-        double max = -Integer.MAX_VALUE;
+    //Compares the distances of all neighbours (except the one in the excluded direction) to the target
+    protected int selectDir(int target, boolean approach, int excluded)
+    {
+        int dir = -1;
+        int best = 0;
 
-        for(int i = 0; i < options.length; i++)
+        for(int i = 0; i < neighbors.length; i++)
         {
-            if(options[i] != null)
+            if(neighbors[i] != null && i != excluded)
             {
-                double dist = 0;
-                dist = options[i].getPathDistance(to);
+                int dist = maze.getDistance(neighbors[i].index, target);
 
-                if(approach && dist < min)
+                if(dir == -1 || (approach && dist < best) || (!approach && dist > best))
                 {
-                    min = dist;
-                    dir = i;
-                }
-
-                if(!approach && dist > max)
-                {
-                    max = dist;
+                    best = dist;
                     dir = i;
                 }
             }
@@ -71,36 +76,38 @@ public class _Node implements Node
         return dir;
     }
 
+    //Returns the entry of the next-direction table for the target: approach direction in the low 4 bits, retreat
+    //direction in the high 4 bits (0xF if there is no move)
+    protected int getNextDirEntry(int target)
+    {
+        return (selectDir(target, true, -1) & 0xF) | (selectDir(target, false, -1) & 0xF) << 4;
+    }
+
     public List<Node> getPath(Node to) { return getPath(to, true, 0); }
 
-    //Returns the path of adjacent nodes from one node to another, including these nodes
-    //E.g., path from a to c might be [a,f,r,t,c]
+    //Returns the path of adjacent nodes from one node to another, excluding the target node
+    //E.g., path from a to c might be [a,f,r,t]
     public List<Node> getPath(Node to, boolean canReverse, int direction)
     {
         if(getNumNeighbors()==0)
             return new ArrayList<Node>();
 
         _Node currentNode = this;
-        ArrayList<_Node> path = new ArrayList<_Node>();
+        ArrayList<Node> path = new ArrayList<Node>(Math.max(getPathDistance(to), 0));
 
         while(currentNode != to)
         {
             path.add(currentNode);
-            direction = getNextDir(to, true, canReverse, direction);
-            currentNode = neighbors[direction];
+            direction = currentNode.getNextDir(to, true, canReverse, direction);
+            currentNode = currentNode.neighbors[direction];
         }
 
-        Node[] arrayPath = new _Node[path.size()];
-
-        for(int i=0;i<arrayPath.length;i++)
-            arrayPath[i]=path.get(i);
-
-        return Arrays.asList(arrayPath);
+        return path;
     }
 
     public int getPathDistance(Node to)
     {
-        return maze.distances.get(this, to);
+        return maze.getDistance(index, ((_Node) to).index);
     }
 
     //Returns the EUCLEDIAN distance between two nodes in the current maze.
@@ -117,8 +124,9 @@ public class _Node implements Node
         return (int)(Math.abs(x - to.getX()) + Math.abs(y - to.getY()));
     }
 
-    protected _Node(int _x, int _y, int _pillIndex, int _powerPillIndex, _Maze _maze)
+    protected _Node(int _index, int _x, int _y, int _pillIndex, int _powerPillIndex, _Maze _maze)
     {
+        index = _index;
         x = _x;
         y = _y;
         pillIndex = _pillIndex;